@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.benchmark;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import com.hartveld.commons.db.HibernateProperties;
+
+final class BenchmarkDatabase {
+
+	static final String PERSISTENCE_UNIT = "benchmark";
+
+	static final int BATCH_SIZE = 50;
+
+	private BenchmarkDatabase() {
+	}
+
+	static EntityManagerFactory open() {
+		final Map<String, String> properties = HibernateProperties.batching(BATCH_SIZE);
+
+		return Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, properties);
+	}
+
+	static List<Sample> samples(final int size) {
+		checkArgument(size >= 0, "size must not be negative");
+
+		final List<Sample> samples = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			samples.add(new Sample("sample-" + i, i));
+		}
+
+		return samples;
+	}
+
+	static List<SequencedSample> sequencedSamples(final int size) {
+		checkArgument(size >= 0, "size must not be negative");
+
+		final List<SequencedSample> samples = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			samples.add(new SequencedSample("sample-" + i, i));
+		}
+
+		return samples;
+	}
+
+	static void populate(final EntityManagerFactory emf, final int size) {
+		final EntityManager em = emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			new SampleDAO(em).persistAll(samples(size), BATCH_SIZE);
+			em.getTransaction().commit();
+		} finally {
+			em.close();
+		}
+	}
+
+}
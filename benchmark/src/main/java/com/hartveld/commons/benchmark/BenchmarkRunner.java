@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks in this package against an in-memory H2 database. Accepts the regular JMH command line options,
+ * but writes JSON results to {@value #RESULT_FILE} unless told otherwise, so runs can be compared between releases:
+ *
+ * <pre>
+ * mvn -pl benchmark -am package
+ * java -jar benchmark/target/benchmarks.jar [regexp] [-prof gc]
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+	public static final String RESULT_FILE = "jmh-result.json";
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+		final CommandLineOptions options = new CommandLineOptions(args);
+
+		final ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+		if (options.getIncludes().isEmpty()) {
+			builder.include(BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark");
+		}
+		if (!options.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		if (!options.getResult().hasValue()) {
+			builder.result(RESULT_FILE);
+		}
+
+		new Runner(builder.build()).run();
+	}
+
+}
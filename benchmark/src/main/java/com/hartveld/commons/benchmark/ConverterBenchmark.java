@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hartveld.commons.db.Converter;
+import com.hartveld.commons.db.GeneratedConverter;
+
+/**
+ * Converts {@code size} detached entities with a hand-written converter, the same converter above its parallel
+ * threshold, and a {@link GeneratedConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConverterBenchmark {
+
+	private static final int PARALLEL_THRESHOLD = 1000;
+
+	@Param({ "100", "10000", "100000" })
+	private int size;
+
+	private List<Sample> samples;
+
+	private final Converter<Sample, SampleDTO> handWritten = new SampleConverter();
+	private final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	private final Converter<Sample, SampleDTO> parallel = new SampleConverter(PARALLEL_THRESHOLD, executor);
+	private final Converter<Sample, SampleDTO> generated = GeneratedConverter.of(Sample.class, SampleDTO.class);
+
+	@Setup(Level.Trial)
+	public void load() {
+		final EntityManagerFactory emf = BenchmarkDatabase.open();
+		try {
+			BenchmarkDatabase.populate(emf, size);
+
+			final EntityManager em = emf.createEntityManager();
+			try {
+				samples = new SampleDAO(em).retrieveAll(true);
+			} finally {
+				em.close();
+			}
+		} finally {
+			emf.close();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public List<SampleDTO> handWritten() {
+		return handWritten.toDTOs(samples);
+	}
+
+	@Benchmark
+	public List<SampleDTO> handWrittenParallel() {
+		return parallel.toDTOs(samples);
+	}
+
+	@Benchmark
+	public List<SampleDTO> generated() {
+		return generated.toDTOs(samples);
+	}
+
+}
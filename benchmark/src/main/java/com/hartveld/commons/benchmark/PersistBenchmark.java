@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserts {@code size} new entities per invocation and rolls the transaction back afterwards, so the tables stay
+ * empty. Compares single persists, batched {@code persistAll} with IDENTITY ids and batched {@code persistAll} with
+ * pooled sequence ids.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistBenchmark {
+
+	@Param({ "10", "1000", "10000" })
+	private int size;
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+
+	private List<Sample> samples;
+	private List<SequencedSample> sequencedSamples;
+
+	@Setup(Level.Trial)
+	public void open() {
+		emf = BenchmarkDatabase.open();
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		emf.close();
+	}
+
+	@Setup(Level.Invocation)
+	public void begin() {
+		samples = BenchmarkDatabase.samples(size);
+		sequencedSamples = BenchmarkDatabase.sequencedSamples(size);
+
+		em = emf.createEntityManager();
+		em.getTransaction().begin();
+	}
+
+	@TearDown(Level.Invocation)
+	public void rollback() {
+		em.getTransaction().rollback();
+		em.close();
+	}
+
+	@Benchmark
+	public void persist() {
+		final SampleDAO dao = new SampleDAO(em);
+		for (final Sample sample : samples) {
+			dao.persist(sample);
+		}
+		dao.flush();
+	}
+
+	@Benchmark
+	public int persistAll() {
+		return new SampleDAO(em).persistAll(samples, BenchmarkDatabase.BATCH_SIZE);
+	}
+
+	@Benchmark
+	public int persistAllSequenced() {
+		return new SequencedSampleDAO(em).persistAll(sequencedSamples, BenchmarkDatabase.BATCH_SIZE);
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads from a table of {@code size} rows. Every invocation starts with an empty persistence context, so
+ * {@code retrieveById} always goes to the database. The {@code AndFlush} variants include the flush-time dirty check
+ * that read-only loading avoids; run with {@code -prof gc} to compare allocation as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RetrieveBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	private int size;
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+
+	private long[] ids;
+
+	@Setup(Level.Trial)
+	public void open() {
+		emf = BenchmarkDatabase.open();
+		BenchmarkDatabase.populate(emf, size);
+
+		em = emf.createEntityManager();
+		ids = new SampleDAO(em).retrieveAll(true).stream().mapToLong(Sample::getId).toArray();
+		em.clear();
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		em.close();
+		emf.close();
+	}
+
+	@Benchmark
+	public Sample retrieveById() {
+		em.clear();
+
+		final long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+		return new SampleDAO(em).retrieveById(id);
+	}
+
+	@Benchmark
+	public List<Sample> retrieveAll() {
+		em.clear();
+
+		return new SampleDAO(em).retrieveAll();
+	}
+
+	@Benchmark
+	public List<Sample> retrieveAllReadOnly() {
+		em.clear();
+
+		return new SampleDAO(em, true).retrieveAll();
+	}
+
+	@Benchmark
+	public List<Sample> retrieveAllAndFlush() {
+		return retrieveAndFlush(new SampleDAO(em));
+	}
+
+	@Benchmark
+	public List<Sample> retrieveAllReadOnlyAndFlush() {
+		return retrieveAndFlush(new SampleDAO(em, true));
+	}
+
+	@Benchmark
+	public long streamAll() {
+		em.clear();
+
+		try (Stream<Sample> samples = new SampleDAO(em).streamAll()) {
+			return samples.mapToLong(Sample::getAmount).sum();
+		}
+	}
+
+	private List<Sample> retrieveAndFlush(final SampleDAO dao) {
+		em.clear();
+
+		em.getTransaction().begin();
+		final List<Sample> samples = dao.retrieveAll();
+		dao.flush();
+		em.getTransaction().commit();
+
+		return samples;
+	}
+
+}
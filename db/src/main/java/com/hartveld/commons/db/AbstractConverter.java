@@ -1,16 +1,16 @@
 /*
  * Copyright (c) 2013 David Hartveld
- * 
+ *
  * Permission is hereby granted, free of charge, to any person obtaining a copy
  * of this software and associated documentation files (the "Software"), to deal
  * in the Software without restriction, including without limitation the rights
  * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
  * copies of the Software, and to permit persons to whom the Software is
  * furnished to do so, subject to the following conditions:
- * 
+ *
  * The above copyright notice and this permission notice shall be included in
  * all copies or substantial portions of the Software.
- * 
+ *
  * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
  * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
  * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
@@ -22,40 +22,100 @@
 
 package com.hartveld.commons.db;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.collect.Lists;
 
 public abstract class AbstractConverter<Model, DTO> implements Converter<Model, DTO> {
 
+	public static final int SEQUENTIAL = Integer.MAX_VALUE;
+
 	private static final Logger LOG = LoggerFactory.getLogger(AbstractConverter.class);
 
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final int parallelThreshold;
+	private final Executor executor;
+
+	protected AbstractConverter() {
+		this(SEQUENTIAL, Runnable::run);
+	}
+
+	/**
+	 * Converts collections of at least {@code parallelThreshold} models in chunks on {@code executor}, preserving
+	 * their order.
+	 * <p>
+	 * The chunks call {@link #createDTO(Object, boolean)} on the executor's threads, while a {@link
+	 * javax.persistence.EntityManager} may only be used by one thread. Parallel conversion therefore requires
+	 * detached models, or models of which everything {@code createDTO} reads is already initialized; collections
+	 * holding uninitialized proxies are refused. Pass an executor dedicated to this work, not a pool shared with
+	 * blocking tasks.
+	 */
+	protected AbstractConverter(final int parallelThreshold, final Executor executor) {
+		checkArgument(parallelThreshold > 0, "parallelThreshold must be positive");
+		checkNotNull(executor, "executor");
+
+		this.parallelThreshold = parallelThreshold;
+		this.executor = executor;
+	}
+
 	@Override
 	public final DTO toDTO(final Model model) {
 		LOG.trace("toDTO: {}", model);
 
-		return toDTO(model, false);
+		return toSharedDTO(model, false);
 	}
 
+	/**
+	 * Converts the model with {@link #createDTO(Object, boolean)}, sharing the DTO of a model within an open {@link
+	 * ConversionContext}. Converters that override this method instead of implementing {@code createDTO} still share
+	 * DTOs between the models of one {@code toDTOs} call, but not with nested conversions of their references.
+	 */
 	@Override
-	public final List<DTO> toDTOs(final Collection<? extends Model> list) {
-		LOG.trace("toDTOs: {}", list);
+	public DTO toDTO(final Model model, final boolean incrementVersion) {
+		LOG.trace("toDTO: {}, incrementVersion: {}", model, incrementVersion);
 
-		checkNotNull(list, "list");
-
-		final Builder<DTO> builder = ImmutableList.builder();
-		for (final Model model : list) {
-			builder.add(toDTO(model));
+		final ConversionContext context = ConversionContext.current();
+		if (context == null) {
+			return createDTO(model, incrementVersion);
 		}
 
-		return builder.build();
+		return context.convert(this, model, incrementVersion, () -> createDTO(model, incrementVersion));
+	}
+
+	/**
+	 * Creates the DTO for the model. Called through {@link #toDTO(Object, boolean)} and the other conversion
+	 * methods, which share the DTO of a model within an open {@link ConversionContext}; convert references by
+	 * calling those, not this method. New converters implement this method; overriding {@code toDTO(Object,
+	 * boolean)} instead is supported for existing converters.
+	 *
+	 * @throws UnsupportedOperationException if the converter neither implements this method nor overrides {@code
+	 *             toDTO(Object, boolean)}.
+	 */
+	protected DTO createDTO(final Model model, final boolean incrementVersion) {
+		throw new UnsupportedOperationException(getClass().getName()
+				+ " must implement createDTO or override toDTO(model, incrementVersion)");
+	}
+
+	@Override
+	public final List<DTO> toDTOs(final Collection<? extends Model> list) {
+		LOG.trace("toDTOs: {}", list);
+
+		return toDTOs(list, false);
 	}
 
 	@Override
@@ -64,12 +124,81 @@ public abstract class AbstractConverter<Model, DTO> implements Converter<Model,
 
 		checkNotNull(list, "list");
 
-		final Builder<DTO> builder = ImmutableList.builder();
+		if (list.size() >= parallelThreshold) {
+			return toDTOsInParallel(list, incrementVersion);
+		}
+
+		return convert(list, incrementVersion);
+	}
+
+	private List<DTO> toDTOsInParallel(final Collection<? extends Model> list, final boolean incrementVersion) {
+		LOG.trace("toDTOsInParallel: {} models", list.size());
+
 		for (final Model model : list) {
-			builder.add(toDTO(model, incrementVersion));
+			checkArgument(Hibernate.isInitialized(model), "cannot convert uninitialized proxy in parallel: %s",
+					Hibernate.getClass(model).getName());
+		}
+
+		final int chunks = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_THREAD;
+		final int chunkSize = (list.size() + chunks - 1) / chunks;
+
+		final List<CompletableFuture<List<DTO>>> futures = new ArrayList<>(chunks);
+		for (final List<? extends Model> chunk : Lists.partition(new ArrayList<>(list), chunkSize)) {
+			futures.add(CompletableFuture.supplyAsync(() -> convert(chunk, incrementVersion), executor));
+		}
+
+		final Builder<DTO> builder = ImmutableList.builder();
+		try {
+			for (final CompletableFuture<List<DTO>> future : futures) {
+				builder.addAll(future.join());
+			}
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
 		}
 
 		return builder.build();
 	}
 
+	protected final void register(final Model model, final boolean incrementVersion, final DTO dto) {
+		final ConversionContext context = ConversionContext.current();
+		if (context != null) {
+			context.register(this, model, incrementVersion, dto);
+		}
+	}
+
+	private DTO toSharedDTO(final Model model, final boolean incrementVersion) {
+		final ConversionContext context = ConversionContext.current();
+		if (context == null) {
+			return toDTO(model, incrementVersion);
+		}
+
+		// Looked up and registered here as well, so converters overriding toDTO(model, incrementVersion) share DTOs.
+		final DTO existing = context.get(this, model, incrementVersion);
+		if (existing != null) {
+			return existing;
+		}
+
+		final DTO dto = toDTO(model, incrementVersion);
+		context.register(this, model, incrementVersion, dto);
+
+		return dto;
+	}
+
+	private List<DTO> convert(final Collection<? extends Model> models, final boolean incrementVersion) {
+		final ConversionContext context = ConversionContext.open();
+		try {
+			final Builder<DTO> builder = ImmutableList.builder();
+			for (final Model model : models) {
+				builder.add(toSharedDTO(model, incrementVersion));
+			}
+
+			return builder.build();
+		} finally {
+			context.close();
+		}
+	}
+
 }
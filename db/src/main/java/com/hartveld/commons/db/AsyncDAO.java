@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs DAO operations asynchronously, each with its own entity manager, so independent lookups can overlap. At most
+ * {@code maxConcurrency} operations hold an entity manager at the same time, which keeps the facade from exhausting
+ * the connection pool even on an unbounded executor. Entities in the results are detached; the retrieve methods load
+ * them read-only.
+ */
+public class AsyncDAO<T extends AbstractEntity> implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncDAO.class);
+
+	private final EntityManagerFactory emf;
+	private final DAOFactory<T> daoFactory;
+
+	private final Semaphore permits;
+	private final Executor executor;
+	private final ExecutorService ownedExecutor;
+
+	/**
+	 * Runs operations on a fixed pool of {@code maxConcurrency} daemon threads, which is shut down on
+	 * {@link #close()}.
+	 */
+	public AsyncDAO(final EntityManagerFactory emf, final DAOFactory<T> daoFactory, final int maxConcurrency) {
+		this(emf, daoFactory, maxConcurrency, Executors.newFixedThreadPool(maxConcurrency, new ThreadFactoryBuilder()
+				.setNameFormat("async-dao-%d")
+				.setDaemon(true)
+				.build()), true);
+	}
+
+	/**
+	 * Runs operations on the given executor, for example one that starts a thread per task. Operations over the
+	 * concurrency limit wait for a permit on their executor thread.
+	 */
+	public AsyncDAO(final EntityManagerFactory emf, final DAOFactory<T> daoFactory, final int maxConcurrency,
+			final Executor executor) {
+		this(emf, daoFactory, maxConcurrency, executor, false);
+	}
+
+	private AsyncDAO(final EntityManagerFactory emf, final DAOFactory<T> daoFactory, final int maxConcurrency,
+			final Executor executor, final boolean ownsExecutor) {
+		checkNotNull(emf, "emf");
+		checkNotNull(daoFactory, "daoFactory");
+		checkArgument(maxConcurrency > 0, "maxConcurrency must be positive");
+		checkNotNull(executor, "executor");
+
+		this.emf = emf;
+		this.daoFactory = daoFactory;
+		this.permits = new Semaphore(maxConcurrency, true);
+		this.executor = executor;
+
+		if (ownsExecutor) {
+			this.ownedExecutor = (ExecutorService) executor;
+		} else {
+			this.ownedExecutor = null;
+		}
+	}
+
+	public final CompletableFuture<T> retrieveById(final long id) {
+		LOG.trace("retrieveById: {}", id);
+
+		return readOnly(dao -> dao.retrieveById(id));
+	}
+
+	public final CompletableFuture<List<T>> retrieveByIds(final Collection<Long> ids) {
+		LOG.trace("retrieveByIds: {}", ids);
+
+		return readOnly(dao -> dao.retrieveByIds(ids));
+	}
+
+	public final CompletableFuture<Map<Long, T>> retrieveMapByIds(final Collection<Long> ids) {
+		LOG.trace("retrieveMapByIds: {}", ids);
+
+		return readOnly(dao -> dao.retrieveMapByIds(ids));
+	}
+
+	public final CompletableFuture<List<T>> retrieveAll() {
+		LOG.trace("retrieveAll:");
+
+		return readOnly(dao -> dao.retrieveAll());
+	}
+
+	public final CompletableFuture<T> persist(final T entity) {
+		LOG.trace("persist: {}", entity);
+
+		checkNotNull(entity, "entity");
+
+		return write(dao -> {
+			dao.persist(entity);
+			return entity;
+		});
+	}
+
+	public final CompletableFuture<Void> removeById(final long id) {
+		LOG.trace("removeById: {}", id);
+
+		return write(dao -> {
+			dao.removeById(id);
+			return null;
+		});
+	}
+
+	/**
+	 * Runs the work with a DAO on a new entity manager, without a transaction.
+	 */
+	public final <R> CompletableFuture<R> read(final Function<? super DAO<T>, R> work) {
+		checkNotNull(work, "work");
+
+		return submit(em -> work.apply(daoFactory.create(em)));
+	}
+
+	/**
+	 * Runs the work with a DAO on a new entity manager, in a transaction that commits when the work returns.
+	 */
+	public final <R> CompletableFuture<R> write(final Function<? super DAO<T>, R> work) {
+		checkNotNull(work, "work");
+
+		return submit(em -> {
+			final EntityTransaction tx = em.getTransaction();
+			tx.begin();
+			try {
+				final R result = work.apply(daoFactory.create(em));
+				tx.commit();
+				return result;
+			} finally {
+				if (tx.isActive()) {
+					tx.rollback();
+				}
+			}
+		});
+	}
+
+	@Override
+	public void close() {
+		LOG.trace("close:");
+
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+
+	/**
+	 * Runs the work like {@link #read(Function)}, on an entity manager that loads every entity read-only.
+	 */
+	private <R> CompletableFuture<R> readOnly(final Function<? super DAO<T>, R> work) {
+		return submit(em -> {
+			em.unwrap(Session.class).setDefaultReadOnly(true);
+			return work.apply(daoFactory.create(em));
+		});
+	}
+
+	private <R> CompletableFuture<R> submit(final Function<EntityManager, R> work) {
+		return CompletableFuture.supplyAsync(() -> {
+			permits.acquireUninterruptibly();
+			try {
+				final EntityManager em = emf.createEntityManager();
+				try {
+					return work.apply(em);
+				} finally {
+					em.close();
+				}
+			} finally {
+				permits.release();
+			}
+		}, executor);
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PostInsertIdentifierGenerator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+
+/**
+ * Maps an entity to the columns of its table for {@link BulkLoader}. The attributes come from the JPA metamodel, their
+ * columns from the Hibernate persister. The id column is left out when the database assigns ids.
+ */
+final class BulkLoadMapping<T> {
+
+	private final SessionImplementor session;
+	private final SingleTableEntityPersister persister;
+	private final IdentifierGenerator generator;
+
+	private final int[] properties;
+	private final List<String> columns = new ArrayList<>();
+
+	BulkLoadMapping(final SessionImplementor session, final EntityType<T> entityType) {
+		final EntityPersister entityPersister = session.getFactory().getEntityPersister(
+				entityType.getJavaType().getName());
+		checkArgument(entityPersister instanceof SingleTableEntityPersister
+				&& !entityPersister.getEntityMetamodel().hasSubclasses()
+				&& !entityPersister.getEntityMetamodel().isInherited(),
+				"%s is not mapped to a table of its own", entityType.getName());
+
+		this.session = session;
+		this.persister = (SingleTableEntityPersister) entityPersister;
+
+		final IdentifierGenerator identifierGenerator = persister.getIdentifierGenerator();
+		if (identifierGenerator instanceof PostInsertIdentifierGenerator) {
+			this.generator = null;
+		} else {
+			this.generator = identifierGenerator;
+			columns.addAll(Arrays.asList(persister.getIdentifierColumnNames()));
+		}
+
+		final List<Integer> indices = new ArrayList<>();
+		for (final SingularAttribute<? super T, ?> attribute : entityType.getSingularAttributes()) {
+			if (attribute.isId()) {
+				continue;
+			}
+
+			final int index = persister.getEntityMetamodel().getPropertyIndex(attribute.getName());
+			if (persister.getPropertyInsertability()[index]) {
+				indices.add(index);
+			}
+		}
+
+		this.properties = indices.stream().sorted().mapToInt(Integer::intValue).toArray();
+		for (final int property : properties) {
+			columns.addAll(Arrays.asList(persister.getPropertyColumnNames(property)));
+		}
+	}
+
+	String getTableName() {
+		return persister.getTableName();
+	}
+
+	List<String> getColumns() {
+		return columns;
+	}
+
+	String insertSql(final int rows) {
+		final String row = "(" + StringUtils.repeat("?", ", ", columns.size()) + ")";
+
+		return "insert into " + getTableName() + " (" + StringUtils.join(columns, ", ") + ") values "
+				+ StringUtils.repeat(row, ", ", rows);
+	}
+
+	/**
+	 * Binds the columns of the entity to the statement, starting at the given parameter index, and returns the index
+	 * of the next row. Ids that the database does not assign are generated first and set on the entity.
+	 */
+	int bind(final PreparedStatement statement, final int index, final T entity) throws SQLException {
+		int column = index;
+
+		if (generator != null) {
+			final Serializable id = generator.generate(session, entity);
+			persister.setIdentifier(entity, id, session);
+			persister.getIdentifierType().nullSafeSet(statement, id, column, session);
+			column += persister.getIdentifierColumnNames().length;
+		}
+
+		final Object[] values = persister.getPropertyValues(entity);
+		for (final int property : properties) {
+			persister.getPropertyTypes()[property].nullSafeSet(statement, values[property], column, session);
+			column += persister.getPropertyColumnNames(property).length;
+		}
+
+		return column;
+	}
+
+	/**
+	 * Returns the JDBC values that {@link #bind(PreparedStatement, int, Object)} would bind for the entity, in column
+	 * order.
+	 */
+	Object[] values(final T entity) throws SQLException {
+		final Object[] values = new Object[columns.size()];
+
+		final PreparedStatement capture = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+					if (!method.getName().startsWith("set") || args == null || !(args[0] instanceof Integer)) {
+						throw new UnsupportedOperationException(method.getName());
+					}
+					values[(Integer) args[0] - 1] = "setNull".equals(method.getName()) ? null : args[1];
+					return null;
+				});
+		bind(capture, 1, entity);
+
+		return values;
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.primitives.Ints;
+import com.hartveld.commons.db.cache.QueryResultCache;
+import com.hartveld.commons.db.metrics.DAOOperation;
+import com.hartveld.commons.db.metrics.Metrics;
+
+/**
+ * Inserts large numbers of entities straight into their table, bypassing the persistence context. On PostgreSQL the
+ * rows are streamed with COPY when the PostgreSQL driver is on the class path; other databases get multi-row
+ * inserts. Entities are taken from the iterator as they are written, at most {@code batchSize} at a time.
+ * <p>
+ * The columns are those of the entity's own table: entities with collection tables, secondary tables or subclasses
+ * are not supported. Ids that the database assigns (identity columns, as used by {@link EntityBase}) are not set on
+ * the loaded entities; ids from other generators are. Loaded entities stay detached, entity listeners do not run and
+ * the second-level cache is not updated. Rows are written on the connection of the entity manager, in its current
+ * transaction.
+ */
+public class BulkLoader<T extends AbstractEntity> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BulkLoader.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/**
+	 * Bind parameters per statement; PostgreSQL's limit, and well within that of other drivers.
+	 */
+	private static final int MAX_PARAMETERS = Short.MAX_VALUE;
+
+	private static final boolean COPY_AVAILABLE = isCopyAvailable();
+
+	private final EntityManager em;
+	private final Class<T> entityClass;
+	private final int batchSize;
+
+	public BulkLoader(final EntityManager em, final Class<T> entityClass) {
+		this(em, entityClass, DEFAULT_BATCH_SIZE);
+	}
+
+	public BulkLoader(final EntityManager em, final Class<T> entityClass, final int batchSize) {
+		checkNotNull(em, "em");
+		checkNotNull(entityClass, "entityClass");
+		checkArgument(batchSize > 0, "batchSize must be positive");
+
+		this.em = em;
+		this.entityClass = entityClass;
+		this.batchSize = batchSize;
+	}
+
+	public final long load(final Iterable<? extends T> entities) {
+		LOG.trace("load: {}", entities);
+
+		checkNotNull(entities, "entities");
+
+		return load(entities.iterator());
+	}
+
+	/**
+	 * Writes all entities of the iterator and returns the number of rows inserted. Pending changes of the entity
+	 * manager are flushed first, so the entities can refer to entities persisted before.
+	 */
+	public final long load(final Iterator<? extends T> entities) {
+		LOG.trace("load: {}", entities);
+
+		checkNotNull(entities, "entities");
+
+		em.flush();
+
+		final SessionImplementor session = em.unwrap(SessionImplementor.class);
+		final BulkLoadMapping<T> mapping = new BulkLoadMapping<>(session, em.getMetamodel().entity(entityClass));
+		final boolean postgres = session.getFactory().getDialect() instanceof PostgreSQL81Dialect;
+
+		final long start = Metrics.start();
+		final long loaded = em.unwrap(Session.class).doReturningWork(connection -> {
+			if (postgres && COPY_AVAILABLE && PostgresCopy.supports(connection)) {
+				return PostgresCopy.copy(connection, mapping, entities, batchSize);
+			}
+			return insert(connection, mapping, entities);
+		});
+		Metrics.record(entityClass, DAOOperation.BULK_LOAD, start, Ints.saturatedCast(loaded));
+
+		final QueryResultCache cache = QueryResultCache.installed();
+		if (cache != null) {
+			cache.invalidate(entityClass, em);
+		}
+
+		return loaded;
+	}
+
+	private long insert(final Connection connection, final BulkLoadMapping<T> mapping,
+			final Iterator<? extends T> entities) throws SQLException {
+		final int rowsPerStatement = Math.max(1, Math.min(batchSize, MAX_PARAMETERS / mapping.getColumns().size()));
+		final List<T> rows = new ArrayList<>(rowsPerStatement);
+		long loaded = 0;
+
+		try (final PreparedStatement statement = connection.prepareStatement(mapping.insertSql(rowsPerStatement))) {
+			while (entities.hasNext()) {
+				rows.add(entities.next());
+				if (rows.size() == rowsPerStatement) {
+					loaded += insert(statement, mapping, rows);
+				}
+			}
+		}
+
+		if (!rows.isEmpty()) {
+			try (final PreparedStatement statement = connection.prepareStatement(mapping.insertSql(rows.size()))) {
+				loaded += insert(statement, mapping, rows);
+			}
+		}
+
+		return loaded;
+	}
+
+	private static <T> int insert(final PreparedStatement statement, final BulkLoadMapping<T> mapping,
+			final List<T> rows) throws SQLException {
+		int index = 1;
+		for (final T row : rows) {
+			index = mapping.bind(statement, index, row);
+		}
+		rows.clear();
+
+		return statement.executeUpdate();
+	}
+
+	private static boolean isCopyAvailable() {
+		try {
+			Class.forName("org.postgresql.copy.CopyManager", false, BulkLoader.class.getClassLoader());
+			return true;
+		} catch (final ClassNotFoundException e) {
+			LOG.debug("PostgreSQL driver not found, bulk loads use inserts");
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.QueryHints;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.hartveld.commons.db.cache.QueryResultCache;
+
+/**
+ * A query whose results are served from the installed {@link QueryResultCache}, and that runs as a normal query when
+ * none is installed. Created by {@link DAOBase#createCachedQuery(String)}.
+ * <p>
+ * Entity results are cached as ids and loaded again on the entity manager of the DAO, so entities are never shared
+ * between entity managers; rows that hold entities, such as {@code Object[]} or {@link Tuple} rows, are refused. The
+ * results are invalidated by writes to the DAO's entity class and to an entity result class, and to the classes given
+ * to {@link #invalidatedBy(Class...)}.
+ */
+public final class CachedQuery<R> {
+
+	private final DAOBase<?> dao;
+	private final String query;
+	private final Class<R> resultClass;
+
+	private final Map<String, Object> parameters = new LinkedHashMap<>();
+	private final Set<Class<?>> entityClasses = new LinkedHashSet<>();
+
+	CachedQuery(final DAOBase<?> dao, final String query, final Class<R> resultClass) {
+		checkNotNull(dao, "dao");
+		checkArgument(isNotEmpty(query), "query must be non-empty");
+		checkNotNull(resultClass, "resultClass");
+
+		this.dao = dao;
+		this.query = query;
+		this.resultClass = resultClass;
+
+		entityClasses.add(dao.getEntityClass());
+		if (isEntityResult()) {
+			entityClasses.add(resultClass);
+		}
+	}
+
+	public CachedQuery<R> setParameter(final String name, final Object value) {
+		checkNotNull(name, "name");
+		checkNotNull(value, "value");
+
+		parameters.put(name, value);
+		return this;
+	}
+
+	/**
+	 * Also invalidates the results on writes to the given entity classes, for queries that read them without
+	 * returning them, such as {@code select c.parent.name from Child c}.
+	 */
+	public CachedQuery<R> invalidatedBy(final Class<?>... classes) {
+		checkNotNull(classes, "classes");
+
+		for (final Class<?> entityClass : classes) {
+			entityClasses.add(checkNotNull(entityClass, "entityClass"));
+		}
+		return this;
+	}
+
+	public List<R> getResultList() {
+		final QueryResultCache cache = QueryResultCache.installed();
+		if (cache == null) {
+			return execute();
+		}
+
+		final Set<Class<?>> dependencies = ImmutableSet.copyOf(entityClasses);
+
+		if (!isEntityResult()) {
+			return cache.get(dependencies, query, parameters, resultClass, () -> rows(execute()));
+		}
+
+		final List<Long> ids = cache.get(dependencies, query, parameters, Long.class, () -> ids(execute()));
+		return resolve(ids);
+	}
+
+	private boolean isEntityResult() {
+		return AbstractEntity.class.isAssignableFrom(resultClass);
+	}
+
+	private List<R> execute() {
+		final TypedQuery<R> typed = dao.createQuery(query, resultClass);
+		for (final Map.Entry<String, Object> parameter : parameters.entrySet()) {
+			typed.setParameter(parameter.getKey(), parameter.getValue());
+		}
+
+		return typed.getResultList();
+	}
+
+	/**
+	 * Loads the entities on the DAO's entity manager, in the cached order and with the cached repetitions.
+	 */
+	private List<R> resolve(final List<Long> ids) {
+		final Map<Long, ?> found;
+		if (resultClass == dao.getEntityClass()) {
+			found = dao.retrieveMapByIds(ids);
+		} else {
+			found = retrieveMapByIds(ids);
+		}
+
+		final List<R> entities = new ArrayList<>(ids.size());
+		for (final Long id : ids) {
+			if (found.containsKey(id)) {
+				entities.add(resultClass.cast(found.get(id)));
+			}
+		}
+
+		return Collections.unmodifiableList(entities);
+	}
+
+	private Map<Long, R> retrieveMapByIds(final List<Long> ids) {
+		final EntityManager em = dao.getEntityManager();
+		final Map<Long, R> found = new HashMap<>();
+
+		for (final List<Long> chunk : Lists.partition(ImmutableSet.copyOf(ids).asList(),
+				DAOBase.DEFAULT_IN_LIST_SIZE)) {
+			final CriteriaQuery<R> criteria = em.getCriteriaBuilder().createQuery(resultClass);
+			final Root<R> root = criteria.from(resultClass);
+
+			final TypedQuery<R> typed = em.createQuery(criteria.select(root).where(root.get("id").in(chunk)));
+			if (dao.isReadOnly()) {
+				typed.setHint(QueryHints.HINT_READONLY, true);
+			}
+
+			for (final R entity : typed.getResultList()) {
+				found.put(((AbstractEntity) entity).getId(), entity);
+			}
+		}
+
+		return found;
+	}
+
+	private List<R> rows(final List<R> rows) {
+		final SessionFactory factory = dao.getEntityManager().unwrap(Session.class).getSessionFactory();
+
+		for (final R row : rows) {
+			for (final Object value : values(row)) {
+				if (value != null && factory.getClassMetadata(Hibernate.getClass(value)) != null) {
+					throw new IllegalArgumentException("Cannot cache rows holding " + Hibernate.getClass(value)
+							.getSimpleName() + " entities, select their ids instead");
+				}
+			}
+		}
+
+		return Collections.unmodifiableList(new ArrayList<>(rows));
+	}
+
+	private static Object[] values(final Object row) {
+		if (row instanceof Object[]) {
+			return (Object[]) row;
+		}
+		if (row instanceof Tuple) {
+			return ((Tuple) row).toArray();
+		}
+
+		return new Object[] { row };
+	}
+
+	private static List<Long> ids(final List<?> entities) {
+		final List<Long> ids = new ArrayList<>(entities.size());
+		for (final Object entity : entities) {
+			ids.add(((AbstractEntity) entity).getId());
+		}
+
+		return Collections.unmodifiableList(ids);
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Thread-safe counters of {@link OptimisticRetryExecutor} runs, and of optimistic lock conflicts per entity name. Can
+ * be shared between executors to get the conflict rates of a whole application.
+ */
+public final class ConflictStatistics {
+
+	private final LongAdder executions = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final ConcurrentMap<String, LongAdder> conflicts = new ConcurrentHashMap<>();
+
+	void recordExecution() {
+		executions.increment();
+	}
+
+	void recordConflict(final String entityName) {
+		conflicts.computeIfAbsent(entityName, name -> new LongAdder()).increment();
+	}
+
+	void recordFailure() {
+		failures.increment();
+	}
+
+	public long getExecutions() {
+		return executions.sum();
+	}
+
+	/**
+	 * Returns the number of units of work that still conflicted after the last attempt.
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	public long getConflicts() {
+		long sum = 0;
+		for (final LongAdder count : conflicts.values()) {
+			sum += count.sum();
+		}
+
+		return sum;
+	}
+
+	public long getConflicts(final String entityName) {
+		checkNotNull(entityName, "entityName");
+
+		final LongAdder count = conflicts.get(entityName);
+		if (count == null) {
+			return 0;
+		}
+
+		return count.sum();
+	}
+
+	public Map<String, Long> getConflictsByEntity() {
+		final ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+		for (final Map.Entry<String, LongAdder> entry : conflicts.entrySet()) {
+			builder.put(entry.getKey(), entry.getValue().sum());
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Returns the conflicts on the given entity per executed unit of work.
+	 */
+	public double getConflictRate(final String entityName) {
+		final long n = getExecutions();
+		if (n == 0) {
+			return 0.0;
+		}
+
+		return (double) getConflicts(entityName) / n;
+	}
+
+	public void reset() {
+		executions.reset();
+		failures.reset();
+		conflicts.clear();
+	}
+
+	@Override
+	public String toString() {
+		final ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
+
+		builder.append("executions", getExecutions());
+		builder.append("failures", getFailures());
+		builder.append("conflicts", getConflictsByEntity());
+
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.hibernate.Hibernate;
+
+public final class ConversionContext implements AutoCloseable {
+
+	private static final ThreadLocal<ConversionContext> CURRENT = new ThreadLocal<>();
+
+	private final Map<Key, Object> converted = new HashMap<>();
+	private final Set<Key> inProgress = new HashSet<>();
+
+	private int depth;
+
+	private ConversionContext() {}
+
+	public static ConversionContext open() {
+		ConversionContext context = CURRENT.get();
+		if (context == null) {
+			context = new ConversionContext();
+			CURRENT.set(context);
+		}
+
+		context.depth++;
+
+		return context;
+	}
+
+	static ConversionContext current() {
+		return CURRENT.get();
+	}
+
+	@Override
+	public void close() {
+		checkState(depth > 0, "context already closed");
+
+		depth--;
+		if (depth == 0) {
+			CURRENT.remove();
+		}
+	}
+
+	<DTO> DTO convert(final Converter<?, DTO> converter, final Object model, final boolean incrementVersion,
+			final Supplier<DTO> conversion) {
+		final Key key = new Key(converter, model, incrementVersion);
+
+		final DTO existing = get(key);
+		if (existing != null) {
+			return existing;
+		}
+
+		if (!inProgress.add(key)) {
+			throw new IllegalStateException("Cyclic reference to " + model + ": the converter must register its DTO"
+					+ " before converting the references of the model");
+		}
+
+		try {
+			final DTO dto = conversion.get();
+			converted.put(key, dto);
+			return dto;
+		} finally {
+			inProgress.remove(key);
+		}
+	}
+
+	<DTO> DTO get(final Converter<?, DTO> converter, final Object model, final boolean incrementVersion) {
+		return get(new Key(converter, model, incrementVersion));
+	}
+
+	<DTO> void register(final Converter<?, DTO> converter, final Object model, final boolean incrementVersion,
+			final DTO dto) {
+		checkNotNull(dto, "dto");
+
+		converted.put(new Key(converter, model, incrementVersion), dto);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <DTO> DTO get(final Key key) {
+		return (DTO) converted.get(key);
+	}
+
+	private static final class Key {
+
+		private final Converter<?, ?> converter;
+		private final Class<?> modelClass;
+		private final Object model;
+		private final long id;
+		private final long version;
+		private final boolean incrementVersion;
+
+		Key(final Converter<?, ?> converter, final Object model, final boolean incrementVersion) {
+			this.converter = converter;
+			this.modelClass = Hibernate.getClass(model);
+			this.incrementVersion = incrementVersion;
+
+			// Persistent entities are identified by class, id and version, so copies from different sessions are
+			// shared too.
+			if (model instanceof AbstractEntity && ((AbstractEntity) model).getId() != 0) {
+				this.model = null;
+				this.id = ((AbstractEntity) model).getId();
+				this.version = ((AbstractEntity) model).getVersion();
+			} else {
+				this.model = model;
+				this.id = 0;
+				this.version = 0;
+			}
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			final Key other = (Key) obj;
+
+			return converter == other.converter
+					&& modelClass == other.modelClass
+					&& model == other.model
+					&& id == other.id
+					&& version == other.version
+					&& incrementVersion == other.incrementVersion;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(converter), modelClass, System.identityHashCode(model), id,
+					version, incrementVersion);
+		}
+
+	}
+
+}
@@ -22,8 +22,15 @@
 
 package com.hartveld.commons.db;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 
 public interface Converter<Model, DTO> {
 
@@ -35,4 +42,43 @@ public interface Converter<Model, DTO> {
 
 	public abstract List<DTO> toDTOs(final Collection<? extends Model> list, boolean incrementVersion);
 
+	public default Stream<DTO> toDTOs(final Stream<? extends Model> models) {
+		return toDTOs(models, false);
+	}
+
+	/**
+	 * Converts the models lazily, as the returned stream is consumed.
+	 */
+	public default Stream<DTO> toDTOs(final Stream<? extends Model> models, final boolean incrementVersion) {
+		checkNotNull(models, "models");
+
+		return models.map(model -> toDTO(model, incrementVersion));
+	}
+
+	public default Iterator<DTO> toDTOs(final Iterator<? extends Model> models) {
+		return toDTOs(models, false);
+	}
+
+	/**
+	 * Returns a view that converts every model as it is iterated over.
+	 */
+	public default Iterator<DTO> toDTOs(final Iterator<? extends Model> models, final boolean incrementVersion) {
+		checkNotNull(models, "models");
+
+		return Iterators.transform(models, model -> toDTO(model, incrementVersion));
+	}
+
+	public default Iterable<DTO> toDTOs(final Iterable<? extends Model> models) {
+		return toDTOs(models, false);
+	}
+
+	/**
+	 * Returns a view that converts every model each time it is iterated over.
+	 */
+	public default Iterable<DTO> toDTOs(final Iterable<? extends Model> models, final boolean incrementVersion) {
+		checkNotNull(models, "models");
+
+		return Iterables.transform(models, model -> toDTO(model, incrementVersion));
+	}
+
 }
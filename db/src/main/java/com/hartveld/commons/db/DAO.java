@@ -24,10 +24,12 @@ package com.hartveld.commons.db;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 
-public interface DAO<T extends EntityBase> {
+public interface DAO<T extends AbstractEntity> {
 
 	public abstract EntityManager getEntityManager();
 
@@ -37,18 +39,55 @@ public interface DAO<T extends EntityBase> {
 
 	public abstract String getEntityName();
 
+	public abstract boolean isReadOnly();
+
+	public abstract long count();
+
 	public abstract List<T> retrieveAll();
 
+	public abstract List<T> retrieveAll(final boolean readOnly);
+
+	public abstract List<T> retrieveAll(final FetchPlan plan);
+
+	public abstract <DTO> List<DTO> retrieveAll(final ProjectionConverter<? super T, DTO> converter);
+
+	public abstract <DTO> List<DTO> retrieveAll(final QueryPredicate<T> predicate,
+			final ProjectionConverter<? super T, DTO> converter);
+
+	public abstract Stream<T> streamAll();
+
+	public abstract Stream<T> streamAll(final int fetchSize);
+
 	public abstract T retrieveById(final long id);
 
-	public abstract void persist(final EntityBase entity);
+	public abstract T retrieveById(final long id, final boolean readOnly);
+
+	public abstract T retrieveById(final long id, final FetchPlan plan);
 
-	public abstract void persistAll(final EntityBase... entities);
+	public abstract List<T> retrieveByIds(final Collection<Long> ids);
 
-	public abstract void persistAll(final Collection<? extends EntityBase> entities);
+	public abstract List<T> retrieveByIds(final Collection<Long> ids, final FetchPlan plan);
 
-	public abstract void remove(final EntityBase entity);
+	public abstract Map<Long, T> retrieveMapByIds(final Collection<Long> ids);
+
+	public abstract Page<T> retrievePage(final int size);
+
+	public abstract Page<T> retrievePage(final PageKey key, final int size);
+
+	public abstract void persist(final AbstractEntity entity);
+
+	public abstract void persistAll(final AbstractEntity... entities);
+
+	public abstract void persistAll(final Collection<? extends AbstractEntity> entities);
+
+	public abstract int persistAll(final Collection<? extends AbstractEntity> entities, final int batchSize);
+
+	public abstract void remove(final AbstractEntity entity);
 
 	public abstract void removeById(final long id);
 
+	public abstract int removeByIds(final Collection<Long> ids);
+
+	public abstract int removeWhere(final QueryPredicate<T> predicate);
+
 }
@@ -26,32 +26,97 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.NoResultException;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
-
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.persister.entity.EntityPersister;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public abstract class DAOBase<T extends EntityBase> implements DAO<T> {
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.hartveld.commons.db.cache.QueryResultCache;
+import com.hartveld.commons.db.metrics.DAOOperation;
+import com.hartveld.commons.db.metrics.Metrics;
+
+public abstract class DAOBase<T extends AbstractEntity> implements DAO<T> {
+
+	public static final int DEFAULT_FETCH_SIZE = 100;
+	public static final int DEFAULT_IN_LIST_SIZE = 1000;
 
 	private static final Logger LOG = LoggerFactory.getLogger(DAOBase.class);
 
+	private static final String COUNT = "count";
+	private static final String RETRIEVE_ALL = "retrieveAll";
+	private static final String RETRIEVE_BY_IDS = "retrieveByIds";
+	private static final String REMOVE_BY_IDS = "removeByIds";
+
+	/**
+	 * Prefixes the names under which ad-hoc queries are registered; it cannot start a class name, so these never
+	 * collide with names passed to {@link #registerQuery(String, String)}.
+	 */
+	private static final String AD_HOC_PREFIX = "jpql:";
+
 	private final EntityManager em;
 
 	private final Class<T> entityClass;
 	private final String entityName;
 
+	private final NamedQueryRegistry queries;
+
+	private final boolean readOnly;
+
 	protected DAOBase(final EntityManager em, final Class<T> clazz) {
+		this(em, clazz, false);
+	}
+
+	protected DAOBase(final EntityManager em, final Class<T> clazz, final boolean readOnly) {
 		checkNotNull(em, "em");
 		checkNotNull(clazz, "clazz");
 
 		this.em = em;
 		this.entityClass = clazz;
 		this.entityName = clazz.getSimpleName();
+		this.readOnly = readOnly;
+
+		this.queries = NamedQueryRegistry.of(em.getEntityManagerFactory());
+
+		registerQuery(COUNT, "select count(e) from " + entityName + " e");
+		registerQuery(RETRIEVE_ALL, "from " + entityName);
+		registerQuery(RETRIEVE_BY_IDS, "from " + entityName + " where id in :ids");
+		registerQuery(REMOVE_BY_IDS, "delete from " + entityName + " where id in :ids");
 	}
 
 	@Override
@@ -62,6 +127,7 @@ public abstract class DAOBase<T extends EntityBase> implements DAO<T> {
 	@Override
 	public final void flush() {
 		em.flush();
+		invalidateCachedQueries();
 	}
 
 	@Override
@@ -75,80 +141,602 @@ public abstract class DAOBase<T extends EntityBase> implements DAO<T> {
 	}
 
 	@Override
-	public final void persist(final EntityBase entity) {
+	public final boolean isReadOnly() {
+		return readOnly;
+	}
+
+	@Override
+	public final void persist(final AbstractEntity entity) {
 		LOG.trace("persist: {}", entity);
 
 		checkNotNull(entity, "entity");
 
+		final long start = Metrics.start();
 		em.persist(entity);
+		Metrics.record(entityClass, DAOOperation.PERSIST, start, 1);
+
+		invalidateCachedQueries();
 	}
 
 	@Override
-	public final void persistAll(final EntityBase... entities) {
+	public final void persistAll(final AbstractEntity... entities) {
 		LOG.trace("persistAll: {}", (Object) entities);
 
-		for (final EntityBase entity : entities) {
+		for (final AbstractEntity entity : entities) {
 			persist(entity);
 		}
 	}
 
 	@Override
-	public final void persistAll(final Collection<? extends EntityBase> entities) {
+	public final void persistAll(final Collection<? extends AbstractEntity> entities) {
 		LOG.trace("persistAll: {}", entities);
 
-		for (final EntityBase entity : entities) {
+		for (final AbstractEntity entity : entities) {
 			persist(entity);
 		}
 	}
 
 	@Override
-	public final void remove(final EntityBase entity) {
+	public final int persistAll(final Collection<? extends AbstractEntity> entities, final int batchSize) {
+		LOG.trace("persistAll: {}, batchSize: {}", entities, batchSize);
+
+		checkNotNull(entities, "entities");
+		checkArgument(batchSize > 0, "batchSize must be positive");
+
+		int batches = 0;
+		int pending = 0;
+		long start = Metrics.start();
+
+		for (final AbstractEntity entity : entities) {
+			checkNotNull(entity, "entity");
+			em.persist(entity);
+
+			pending++;
+			if (pending == batchSize) {
+				flushAndClear(start, pending);
+				batches++;
+				pending = 0;
+				start = Metrics.start();
+			}
+		}
+
+		if (pending > 0) {
+			flushAndClear(start, pending);
+			batches++;
+		}
+
+		return batches;
+	}
+
+	@Override
+	public final void remove(final AbstractEntity entity) {
 		LOG.trace("remove: {}", entity);
 
 		checkNotNull(entity, "entity");
 
+		final long start = Metrics.start();
 		em.remove(entity);
+		Metrics.record(entityClass, DAOOperation.REMOVE, start, 1);
+
+		invalidateCachedQueries();
 	}
 
 	@Override
 	public void removeById(final long id) {
 		LOG.trace("removeById: {}", id);
 
+		final long start = Metrics.start();
 		final T entity = em.find(entityClass, id);
 
 		if (entity != null) {
 			em.remove(entity);
+			Metrics.record(entityClass, DAOOperation.REMOVE, start, 1);
+
+			invalidateCachedQueries();
 		} else {
 			throw new EntityNotFoundException("Entity of type '" + entityName + "' with id '" + id + "' does not exist");
 		}
 	}
 
+	@Override
+	public final int removeByIds(final Collection<Long> ids) {
+		LOG.trace("removeByIds: {}", ids);
+
+		checkNotNull(ids, "ids");
+
+		final List<Long> distinct = ImmutableSet.copyOf(ids).asList();
+		final Cache cache = em.getEntityManagerFactory().getCache();
+		int removed = 0;
+
+		for (final List<Long> chunk : Lists.partition(distinct, getInListSize())) {
+			for (final Long id : chunk) {
+				final T entity = findManaged(id);
+				if (entity != null) {
+					em.detach(entity);
+				}
+			}
+
+			removed += Metrics.timed(em.createNamedQuery(queryName(REMOVE_BY_IDS)), entityClass, DAOOperation.REMOVE)
+					.setParameter("ids", chunk)
+					.executeUpdate();
+
+			for (final Long id : chunk) {
+				cache.evict(entityClass, id);
+			}
+		}
+
+		invalidateCachedQueries();
+
+		return removed;
+	}
+
+	@Override
+	public final int removeWhere(final QueryPredicate<T> predicate) {
+		LOG.trace("removeWhere: {}", predicate);
+
+		checkNotNull(predicate, "predicate");
+
+		final CriteriaBuilder builder = em.getCriteriaBuilder();
+		final CriteriaQuery<Long> query = builder.createQuery(Long.class);
+		final Root<T> root = query.from(entityClass);
+
+		query.select(root.<Long> get("id")).where(predicate.toPredicate(root, builder));
+
+		return removeByIds(Metrics.timed(em.createQuery(query), entityClass, DAOOperation.QUERY).getResultList());
+	}
+
+	@Override
+	public final long count() {
+		LOG.trace("count:");
+
+		return Metrics.timed(em.createNamedQuery(queryName(COUNT), Long.class), entityClass, DAOOperation.COUNT)
+				.getSingleResult();
+	}
+
 	@Override
 	public List<T> retrieveAll() {
-		LOG.trace("retrieveAll:");
+		return retrieveAll(readOnly);
+	}
 
-		final TypedQuery<T> query = em.createQuery("from " + entityName, entityClass);
+	@Override
+	public List<T> retrieveAll(final boolean readOnlyEntities) {
+		LOG.trace("retrieveAll: readOnly: {}", readOnlyEntities);
+
+		final TypedQuery<T> query = Metrics.timed(internalQuery(RETRIEVE_ALL), entityClass, DAOOperation.RETRIEVE_ALL);
+		applyReadOnly(query, readOnlyEntities);
 
 		return query.getResultList();
 	}
 
+	@Override
+	public final List<T> retrieveAll(final FetchPlan plan) {
+		LOG.trace("retrieveAll: {}", plan);
+
+		checkNotNull(plan, "plan");
+
+		final TypedQuery<T> query = Metrics.timed(internalQuery(RETRIEVE_ALL), entityClass, DAOOperation.RETRIEVE_ALL);
+		applyReadOnly(query, readOnly);
+		applyFetchPlan(query, plan);
+
+		// Fetched collections repeat their owner once per element.
+		return ImmutableSet.copyOf(query.getResultList()).asList();
+	}
+
+	@Override
+	public final <DTO> List<DTO> retrieveAll(final ProjectionConverter<? super T, DTO> converter) {
+		return retrieveAll(null, converter);
+	}
+
+	@Override
+	public final <DTO> List<DTO> retrieveAll(final QueryPredicate<T> predicate,
+			final ProjectionConverter<? super T, DTO> converter) {
+		LOG.trace("retrieveAll: {}, {}", predicate, converter);
+
+		checkNotNull(converter, "converter");
+
+		final CriteriaBuilder builder = em.getCriteriaBuilder();
+		final CriteriaQuery<Tuple> query = builder.createTupleQuery();
+		final Root<T> root = query.from(entityClass);
+
+		final List<Selection<?>> selections = new ArrayList<>();
+		for (final String attribute : converter.getProjectedAttributes()) {
+			selections.add(path(root, attribute).alias(attribute.replace('.', '_')));
+		}
+
+		query.multiselect(selections);
+		if (predicate != null) {
+			query.where(predicate.toPredicate(root, builder));
+		}
+
+		final ImmutableList.Builder<DTO> dtos = ImmutableList.builder();
+		for (final Tuple tuple : Metrics.timed(em.createQuery(query), entityClass, DAOOperation.RETRIEVE_ALL)
+				.getResultList()) {
+			dtos.add(converter.fromTuple(tuple));
+		}
+
+		return dtos.build();
+	}
+
+	private static Path<?> path(final Root<?> root, final String attribute) {
+		Path<?> path = root;
+		for (final String part : attribute.split("\\.")) {
+			path = path.get(part);
+		}
+
+		return path;
+	}
+
+	@Override
+	public final Stream<T> streamAll() {
+		return streamAll(DEFAULT_FETCH_SIZE);
+	}
+
+	@Override
+	public final Stream<T> streamAll(final int fetchSize) {
+		LOG.trace("streamAll: fetchSize: {}", fetchSize);
+
+		checkArgument(fetchSize > 0, "fetchSize must be positive");
+
+		final Session session = em.unwrap(Session.class);
+		final ScrollableResults results = session.getNamedQuery(queryName(RETRIEVE_ALL))
+				.setFetchSize(fetchSize)
+				.setCacheMode(CacheMode.IGNORE)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+
+		final EvictingSpliterator<T> spliterator = new EvictingSpliterator<>(session, results, entityClass,
+				fetchSize);
+
+		return StreamSupport.stream(spliterator, false).onClose(results::close);
+	}
+
 	@Override
 	public T retrieveById(final long id) {
-		LOG.trace("retrieveById: {}", id);
+		return retrieveById(id, readOnly);
+	}
+
+	@Override
+	public T retrieveById(final long id, final boolean readOnlyEntity) {
+		LOG.trace("retrieveById: {}, readOnly: {}", id, readOnlyEntity);
+
+		return find(id, readOnlyEntity, ImmutableMap.of());
+	}
+
+	@Override
+	public T retrieveById(final long id, final FetchPlan plan) {
+		LOG.trace("retrieveById: {}, {}", id, plan);
+
+		checkNotNull(plan, "plan");
+
+		// em.find returns a managed entity as it is, so load it again like retrieveByIds does to apply the plan.
+		if (findManaged(id) != null) {
+			final Map<Long, T> found = new HashMap<>();
+			loadByIds(ImmutableList.of(id), plan, found);
+			if (found.containsKey(id)) {
+				return found.get(id);
+			}
+		}
+
+		return find(id, readOnly, ImmutableMap.of(plan.getHint(), plan.toEntityGraph(em, entityClass)));
+	}
+
+	private T find(final long id, final boolean readOnlyEntity, final Map<String, Object> hints) {
+		final long start = Metrics.start();
+		final T entity;
+		if (readOnlyEntity) {
+			entity = findReadOnly(id, hints);
+		} else {
+			entity = em.find(entityClass, id, hints);
+		}
+
+		if (entity == null) {
+			Metrics.record(entityClass, DAOOperation.RETRIEVE_BY_ID, start, 0);
+			throw new NoResultException("Entity of type '" + entityName + "' with id '" + id + "' does not exist");
+		}
+
+		Metrics.record(entityClass, DAOOperation.RETRIEVE_BY_ID, start, 1);
+		return entity;
+	}
+
+	private T findReadOnly(final long id, final Map<String, Object> hints) {
+		final Session session = em.unwrap(Session.class);
+		final boolean defaultReadOnly = session.isDefaultReadOnly();
+
+		session.setDefaultReadOnly(true);
+		try {
+			return em.find(entityClass, id, hints);
+		} finally {
+			session.setDefaultReadOnly(defaultReadOnly);
+		}
+	}
+
+	private static void applyReadOnly(final TypedQuery<?> query, final boolean readOnlyEntities) {
+		if (readOnlyEntities) {
+			query.setHint(QueryHints.HINT_READONLY, true);
+			query.setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+		}
+	}
+
+	private void applyFetchPlan(final TypedQuery<?> query, final FetchPlan plan) {
+		query.setHint(plan.getHint(), plan.toEntityGraph(em, entityClass));
+	}
+
+	/**
+	 * Records the batch as one persist operation, timed up to the end of its flush, which does the actual writes.
+	 */
+	private void flushAndClear(final long start, final int rows) {
+		LOG.trace("flushAndClear: {} rows", rows);
+
+		em.flush();
+		Metrics.record(entityClass, DAOOperation.PERSIST, start, rows);
+		em.clear();
+
+		invalidateCachedQueries();
+	}
+
+	private void invalidateCachedQueries() {
+		final QueryResultCache cache = QueryResultCache.installed();
+		if (cache != null) {
+			cache.invalidate(entityClass, em);
+		}
+	}
+
+	@Override
+	public final List<T> retrieveByIds(final Collection<Long> ids) {
+		LOG.trace("retrieveByIds: {}", ids);
+
+		return ImmutableList.copyOf(retrieveMapByIds(ids).values());
+	}
+
+	@Override
+	public final List<T> retrieveByIds(final Collection<Long> ids, final FetchPlan plan) {
+		LOG.trace("retrieveByIds: {}, {}", ids, plan);
+
+		checkNotNull(ids, "ids");
+		checkNotNull(plan, "plan");
+
+		final Set<Long> requested = ImmutableSet.copyOf(ids);
+		final Map<Long, T> found = new HashMap<>();
+
+		// Managed entities are loaded again, so the plan also applies to associations they have not loaded yet.
+		loadByIds(ImmutableList.copyOf(requested), plan, found);
+
+		final ImmutableList.Builder<T> builder = ImmutableList.builder();
+		for (final Long id : requested) {
+			if (found.containsKey(id)) {
+				builder.add(found.get(id));
+			}
+		}
+
+		return builder.build();
+	}
+
+	@Override
+	public final Map<Long, T> retrieveMapByIds(final Collection<Long> ids) {
+		LOG.trace("retrieveMapByIds: {}", ids);
+
+		checkNotNull(ids, "ids");
+
+		final Set<Long> requested = ImmutableSet.copyOf(ids);
+		final Map<Long, T> found = new HashMap<>();
+		final List<Long> missing = new ArrayList<>();
+
+		for (final Long id : requested) {
+			final T entity = findManaged(id);
+			if (entity != null) {
+				found.put(id, entity);
+			} else {
+				missing.add(id);
+			}
+		}
+
+		loadByIds(missing, null, found);
+
+		final ImmutableMap.Builder<Long, T> builder = ImmutableMap.builder();
+		for (final Long id : requested) {
+			if (found.containsKey(id)) {
+				builder.put(id, found.get(id));
+			}
+		}
+
+		return builder.build();
+	}
+
+	private void loadByIds(final List<Long> ids, final FetchPlan plan, final Map<Long, T> found) {
+		for (final List<Long> chunk : Lists.partition(ids, getInListSize())) {
+			final TypedQuery<T> query = Metrics.timed(idsQuery(chunk, plan), entityClass, DAOOperation.RETRIEVE_BY_IDS);
+			applyReadOnly(query, readOnly);
+
+			for (final T entity : query.getResultList()) {
+				found.put(entity.getId(), entity);
+			}
+		}
+	}
+
+	/**
+	 * Hibernate 4.3 fails to bind an expanded collection parameter once an entity graph is applied, so plans load ids
+	 * through a criteria query that binds every id separately.
+	 */
+	private TypedQuery<T> idsQuery(final List<Long> ids, final FetchPlan plan) {
+		if (plan == null) {
+			return internalQuery(RETRIEVE_BY_IDS).setParameter("ids", ids);
+		}
+
+		final CriteriaQuery<T> criteria = em.getCriteriaBuilder().createQuery(entityClass);
+		final Root<T> root = criteria.from(entityClass);
+
+		final TypedQuery<T> query = em.createQuery(criteria.select(root).where(root.get("id").in(ids)));
+		applyFetchPlan(query, plan);
+
+		return query;
+	}
+
+	protected int getInListSize() {
+		return DEFAULT_IN_LIST_SIZE;
+	}
+
+	private T findManaged(final long id) {
+		final SessionImplementor session = em.unwrap(SessionImplementor.class);
+		final EntityPersister persister = session.getFactory().getEntityPersister(entityClass.getName());
+		final PersistenceContext context = session.getPersistenceContext();
+
+		final Object entity = context.getEntity(session.generateEntityKey(id, persister));
+		if (entity == null) {
+			return null;
+		}
+
+		final EntityEntry entry = context.getEntry(entity);
+		if (entry.getStatus() == Status.DELETED || entry.getStatus() == Status.GONE) {
+			return null;
+		}
+
+		return entityClass.cast(entity);
+	}
+
+	@Override
+	public final Page<T> retrievePage(final int size) {
+		return retrievePage(PageKey.first(), size);
+	}
 
-		final TypedQuery<T> query = em.createQuery("from " + entityName + " where id = :id", entityClass);
+	@Override
+	public final Page<T> retrievePage(final PageKey key, final int size) {
+		LOG.trace("retrievePage: {}, size: {}", key, size);
+
+		checkNotNull(key, "key");
+		checkArgument(size > 0, "size must be positive");
+
+		final TypedQuery<Object[]> query = Metrics.timed(createPageQuery(key), entityClass, DAOOperation.RETRIEVE_PAGE);
+		applyReadOnly(query, readOnly);
+		query.setMaxResults(size + 1);
+
+		final List<Object[]> rows = query.getResultList();
+		final List<T> entities = new ArrayList<>(size);
+		for (final Object[] row : rows.subList(0, Math.min(size, rows.size()))) {
+			entities.add(entityClass.cast(row[0]));
+		}
+
+		if (rows.size() <= size) {
+			return new Page<>(entities, null);
+		}
+
+		final Object[] last = rows.get(size - 1);
+		final T lastEntity = entityClass.cast(last[0]);
+
+		return new Page<>(entities, nextPageKey(key, last[1], lastEntity.getId()));
+	}
+
+	private TypedQuery<Object[]> createPageQuery(final PageKey key) {
+		final String attribute = key.getAttribute();
+
+		if (key.isFirst()) {
+			return em.createNamedQuery(namedQuery("page.first." + attribute, () -> {
+				checkPageAttribute(attribute);
+				return "select e, e." + attribute + " from " + entityName + " e order by e." + attribute + ", e.id";
+			}), Object[].class);
+		}
 
-		query.setParameter("id", id);
+		if (key.isOrderedById()) {
+			final TypedQuery<Object[]> query = em.createNamedQuery(namedQuery("page.afterId",
+					() -> "select e, e.id from " + entityName + " e where e.id > :id order by e.id"), Object[].class);
+			query.setParameter("id", key.getId());
+			return query;
+		}
+
+		final TypedQuery<Object[]> query = em.createNamedQuery(namedQuery("page.after." + attribute, () -> {
+			checkPageAttribute(attribute);
+			return "select e, e." + attribute + " from " + entityName + " e where e." + attribute + " > :value"
+					+ " or (e." + attribute + " = :value and e.id > :id) order by e." + attribute + ", e.id";
+		}), Object[].class);
+		query.setParameter("id", key.getId());
+		query.setParameter("value", key.getValue());
 
-		return query.getSingleResult();
+		return query;
+	}
+
+	private void checkPageAttribute(final String attribute) {
+		// Fails on unknown attributes, which also keeps the name safe to use in JPQL.
+		final SingularAttribute<? super T, ?> singular = em.getMetamodel().entity(entityClass)
+				.getSingularAttribute(attribute);
+
+		// Null values never match the seek predicate, so pages would silently skip those rows.
+		checkArgument(!singular.isOptional(), "Cannot page on optional attribute %s", attribute);
+	}
+
+	private static PageKey nextPageKey(final PageKey key, final Object value, final long id) {
+		if (key.isOrderedById()) {
+			return PageKey.afterId(id);
+		}
+
+		return PageKey.after(key.getAttribute(), value, id);
 	}
 
 	protected final TypedQuery<T> createQuery(final String query) {
-		LOG.trace("createQuery: {}", query);
+		return createQuery(query, entityClass);
+	}
+
+	protected final <R> TypedQuery<R> createQuery(final String query, final Class<R> resultClass) {
+		LOG.trace("createQuery: {}, resultClass: {}", query, resultClass);
+
+		checkArgument(isNotEmpty(query), "query must be non-empty");
+		checkNotNull(resultClass, "resultClass");
 
+		final String queryName = AD_HOC_PREFIX + queryName(query);
+
+		// Keeps dynamically built queries from growing the set of named queries without bounds.
+		if (queries.isFull() && !queries.contains(queryName)) {
+			return Metrics.timed(em.createQuery(query, resultClass), entityClass, DAOOperation.QUERY);
+		}
+
+		if (!queries.contains(queryName)) {
+			queries.register(em, queryName, query);
+		}
+
+		return Metrics.timed(em.createNamedQuery(queryName, resultClass), entityClass, DAOOperation.QUERY);
+	}
+
+	protected final CachedQuery<T> createCachedQuery(final String query) {
+		return createCachedQuery(query, entityClass);
+	}
+
+	protected final <R> CachedQuery<R> createCachedQuery(final String query, final Class<R> resultClass) {
+		LOG.trace("createCachedQuery: {}, resultClass: {}", query, resultClass);
+
+		return new CachedQuery<>(this, query, resultClass);
+	}
+
+	protected final void registerQuery(final String name, final String query) {
+		LOG.trace("registerQuery: {} - {}", name, query);
+
+		checkArgument(isNotEmpty(name), "name must be non-empty");
 		checkArgument(isNotEmpty(query), "query must be non-empty");
 
-		return em.createQuery(query, entityClass);
+		queries.register(em, queryName(name), query);
+	}
+
+	protected final TypedQuery<T> createNamedQuery(final String name) {
+		LOG.trace("createNamedQuery: {}", name);
+
+		checkArgument(isNotEmpty(name), "name must be non-empty");
+
+		return Metrics.timed(internalQuery(name), entityClass, DAOOperation.QUERY);
+	}
+
+	private TypedQuery<T> internalQuery(final String name) {
+		return em.createNamedQuery(queryName(name), entityClass);
+	}
+
+	private String namedQuery(final String name, final Supplier<String> query) {
+		final String queryName = queryName(name);
+
+		if (!queries.contains(queryName)) {
+			queries.register(em, queryName, query.get());
+		}
+
+		return queryName;
+	}
+
+	private String queryName(final String name) {
+		return entityClass.getName() + "." + name;
 	}
 
 }
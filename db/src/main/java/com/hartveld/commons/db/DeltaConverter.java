@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.beans.Introspector;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public final class DeltaConverter<Model extends AbstractEntity, DTO> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DeltaConverter.class);
+
+	private static final String VERSION = "version";
+
+	private final Converter<Model, DTO> converter;
+	private final Map<String, Function<Object, Object>> getters;
+
+	public DeltaConverter(final Converter<Model, DTO> converter, final Class<DTO> dtoClass) {
+		this(MethodHandles.lookup(), converter, dtoClass);
+	}
+
+	public DeltaConverter(final Lookup lookup, final Converter<Model, DTO> converter, final Class<DTO> dtoClass) {
+		checkNotNull(lookup, "lookup");
+		checkNotNull(converter, "converter");
+		checkNotNull(dtoClass, "dtoClass");
+
+		this.converter = converter;
+		this.getters = findGetters(lookup, dtoClass);
+	}
+
+	public List<DTO> toChangedDTOs(final Collection<? extends Model> models, final Map<Long, Long> lastSeenVersions) {
+		LOG.trace("toChangedDTOs: {}, lastSeenVersions: {}", models, lastSeenVersions);
+
+		checkNotNull(models, "models");
+		checkNotNull(lastSeenVersions, "lastSeenVersions");
+
+		final ImmutableList.Builder<Model> changed = ImmutableList.builder();
+		for (final Model model : models) {
+			if (!Objects.equals(lastSeenVersions.get(model.getId()), model.getVersion())) {
+				changed.add(model);
+			}
+		}
+
+		return converter.toDTOs(changed.build());
+	}
+
+	public Optional<Patch> toPatch(final Model model, final DTO baseline) {
+		LOG.trace("toPatch: {}, baseline: {}", model, baseline);
+
+		checkNotNull(model, "model");
+
+		if (baseline != null && isVersion(baseline, model.getVersion())) {
+			return Optional.empty();
+		}
+
+		final DTO current = converter.toDTO(model);
+		final Map<String, Object> changes = new LinkedHashMap<>();
+
+		for (final Map.Entry<String, Function<Object, Object>> getter : getters.entrySet()) {
+			final Object value = getter.getValue().apply(current);
+			if (baseline == null || !Objects.deepEquals(value, getter.getValue().apply(baseline))) {
+				changes.put(getter.getKey(), value);
+			}
+		}
+
+		if (changes.isEmpty()) {
+			return Optional.empty();
+		}
+
+		return Optional.of(new Patch(model.getId(), model.getVersion(), changes));
+	}
+
+	public List<Patch> toPatches(final Collection<? extends Model> models, final Map<Long, DTO> baselines) {
+		LOG.trace("toPatches: {}, baselines: {}", models, baselines);
+
+		checkNotNull(models, "models");
+		checkNotNull(baselines, "baselines");
+
+		final ImmutableList.Builder<Patch> patches = ImmutableList.builder();
+		final ConversionContext context = ConversionContext.open();
+		try {
+			for (final Model model : models) {
+				toPatch(model, baselines.get(model.getId())).ifPresent(patches::add);
+			}
+		} finally {
+			context.close();
+		}
+
+		return patches.build();
+	}
+
+	private boolean isVersion(final DTO dto, final long version) {
+		final Function<Object, Object> getter = getters.get(VERSION);
+		if (getter == null) {
+			return false;
+		}
+
+		final Object value = getter.apply(dto);
+
+		return value instanceof Number && ((Number) value).longValue() == version;
+	}
+
+	private static Map<String, Function<Object, Object>> findGetters(final Lookup lookup, final Class<?> dtoClass) {
+		final Map<String, Method> methods = new TreeMap<>();
+		for (final Method method : dtoClass.getMethods()) {
+			final String property = propertyName(method);
+			// Like the JavaBeans introspector, isX wins over getX for the same property.
+			if (property != null && (!methods.containsKey(property) || method.getName().startsWith("is"))) {
+				methods.put(property, method);
+			}
+		}
+
+		final ImmutableMap.Builder<String, Function<Object, Object>> builder = ImmutableMap.builder();
+		try {
+			for (final Map.Entry<String, Method> method : methods.entrySet()) {
+				builder.put(method.getKey(), PropertyAccessors.getter(lookup, method.getValue()));
+			}
+		} catch (final IllegalAccessException e) {
+			throw new IllegalArgumentException("Cannot read properties of " + dtoClass.getName() + ": "
+					+ e.getMessage(), e);
+		}
+
+		return builder.build();
+	}
+
+	private static String propertyName(final Method method) {
+		if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic()
+				|| method.getParameterTypes().length != 0 || method.getDeclaringClass() == Object.class) {
+			return null;
+		}
+
+		final String name = method.getName();
+		if (name.startsWith("get") && name.length() > 3) {
+			return Introspector.decapitalize(name.substring(3));
+		}
+		if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class) {
+			return Introspector.decapitalize(name.substring(2));
+		}
+
+		return null;
+	}
+
+}
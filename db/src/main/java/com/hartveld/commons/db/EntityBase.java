@@ -26,36 +26,17 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
-import javax.persistence.Version;
-import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.apache.commons.lang3.builder.ToStringStyle;
 
 @MappedSuperclass
-public class EntityBase {
+public class EntityBase extends AbstractEntity {
 
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private long id;
 
-	@Version
-	private long version;
-
+	@Override
 	public final long getId() {
 		return id;
 	}
 
-	public final long getVersion() {
-		return version;
-	}
-
-	@Override
-	public String toString() {
-		final ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
-
-		builder.append("id", getId());
-		builder.append("version", getVersion());
-
-		return builder.toString();
-	}
-
 }
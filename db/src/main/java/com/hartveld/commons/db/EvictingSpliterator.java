@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators.AbstractSpliterator;
+import java.util.function.Consumer;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.CollectionEntry;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.persister.entity.EntityPersister;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Streams the entities of a scroll, evicting each one once it has been consumed. Every {@code fetchSize} rows, and
+ * at the end, it also evicts everything else that was loaded meanwhile, such as associations, so the persistence
+ * context does not grow with the stream. Entities that were managed before the stream started stay managed, and so
+ * do entities with changes that have not been flushed yet: new and removed entities, and entities with dirty
+ * properties or collections. Those are written on the next flush as usual.
+ */
+class EvictingSpliterator<T> extends AbstractSpliterator<T> {
+
+	private final Session session;
+	private final ScrollableResults results;
+	private final Class<T> entityClass;
+	private final int fetchSize;
+
+	private final Set<EntityKey> retained;
+	private int sinceEviction;
+
+	EvictingSpliterator(final Session session, final ScrollableResults results, final Class<T> entityClass,
+			final int fetchSize) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+
+		checkNotNull(session, "session");
+		checkNotNull(results, "results");
+		checkNotNull(entityClass, "entityClass");
+		checkArgument(fetchSize > 0, "fetchSize must be positive");
+
+		this.session = session;
+		this.results = results;
+		this.entityClass = entityClass;
+		this.fetchSize = fetchSize;
+		this.retained = new HashSet<>(entities().keySet());
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super T> action) {
+		if (!results.next()) {
+			evictLoaded();
+			return false;
+		}
+
+		final T entity = entityClass.cast(results.get(0));
+
+		try {
+			action.accept(entity);
+		} finally {
+			evict(entity);
+		}
+
+		sinceEviction++;
+		if (sinceEviction == fetchSize) {
+			evictLoaded();
+		}
+
+		return true;
+	}
+
+	private void evictLoaded() {
+		final Set<Object> dirtyOwners = dirtyCollectionOwners();
+
+		final List<Object> loaded = new ArrayList<>();
+		for (final Map.Entry<EntityKey, Object> entry : entities().entrySet()) {
+			final Object entity = entry.getValue();
+			if (!retained.contains(entry.getKey()) && !dirtyOwners.contains(entity)
+					&& isClean(entity, context().getEntry(entity))) {
+				loaded.add(entity);
+			}
+		}
+
+		for (final Object entity : loaded) {
+			session.evict(entity);
+		}
+		sinceEviction = 0;
+	}
+
+	private void evict(final T entity) {
+		final EntityEntry entry = context().getEntry(entity);
+		if (entry != null && !retained.contains(entry.getEntityKey()) && isClean(entity, entry)
+				&& !dirtyCollectionOwners().contains(entity)) {
+			session.evict(entity);
+		}
+	}
+
+	/**
+	 * Returns whether evicting the entity loses no changes: it is read-only, or it exists in the database and none
+	 * of its properties changed since it was loaded.
+	 */
+	private boolean isClean(final Object entity, final EntityEntry entry) {
+		if (entry.getStatus() == Status.READ_ONLY) {
+			return true;
+		}
+		if (entry.getStatus() != Status.MANAGED || !entry.isExistsInDatabase() || entry.getLoadedState() == null) {
+			return false;
+		}
+
+		final EntityPersister persister = entry.getPersister();
+		return persister.findDirty(persister.getPropertyValues(entity), entry.getLoadedState(), entity,
+				(SessionImplementor) session) == null;
+	}
+
+	private Set<Object> dirtyCollectionOwners() {
+		final Set<Object> owners = Sets.newIdentityHashSet();
+
+		@SuppressWarnings("unchecked")
+		final Map<PersistentCollection, CollectionEntry> collections = context().getCollectionEntries();
+		for (final Map.Entry<PersistentCollection, CollectionEntry> entry : collections.entrySet()) {
+			final PersistentCollection collection = entry.getKey();
+			if (collection.isDirty() && collection.getOwner() != null) {
+				owners.add(collection.getOwner());
+			}
+		}
+
+		return owners;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<EntityKey, Object> entities() {
+		return context().getEntitiesByKey();
+	}
+
+	private PersistenceContext context() {
+		return ((SessionImplementor) session).getPersistenceContext();
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.Subgraph;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Selects the associations that a retrieval loads along with the entities, as a named entity graph or as a list of
+ * attribute paths such as {@code "orders.lines"}. A fetch plan is applied as a JPA fetch graph, so attributes outside
+ * it fall back to lazy loading, or as a load graph with {@link #asLoadGraph()}, which keeps the mapped fetch types.
+ */
+public final class FetchPlan {
+
+	public static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+	public static final String LOAD_GRAPH = "javax.persistence.loadgraph";
+
+	private final String graphName;
+	private final List<String> attributePaths;
+	private final String hint;
+
+	private FetchPlan(final String graphName, final List<String> attributePaths, final String hint) {
+		this.graphName = graphName;
+		this.attributePaths = attributePaths;
+		this.hint = hint;
+	}
+
+	public static FetchPlan named(final String graphName) {
+		checkArgument(isNotEmpty(graphName), "graphName must be non-empty");
+
+		return new FetchPlan(graphName, ImmutableList.of(), FETCH_GRAPH);
+	}
+
+	public static FetchPlan attributes(final String... attributePaths) {
+		checkNotNull(attributePaths, "attributePaths");
+		checkArgument(attributePaths.length > 0, "attributePaths must be non-empty");
+		for (final String path : attributePaths) {
+			checkArgument(isNotEmpty(path), "attributePaths must be non-empty");
+		}
+
+		return new FetchPlan(null, ImmutableList.copyOf(attributePaths), FETCH_GRAPH);
+	}
+
+	public FetchPlan asLoadGraph() {
+		return new FetchPlan(graphName, attributePaths, LOAD_GRAPH);
+	}
+
+	public String getGraphName() {
+		return graphName;
+	}
+
+	public List<String> getAttributePaths() {
+		return attributePaths;
+	}
+
+	public String getHint() {
+		return hint;
+	}
+
+	public <T> EntityGraph<?> toEntityGraph(final EntityManager em, final Class<T> entityClass) {
+		checkNotNull(em, "em");
+		checkNotNull(entityClass, "entityClass");
+
+		if (graphName != null) {
+			return em.getEntityGraph(graphName);
+		}
+
+		final EntityGraph<T> graph = em.createEntityGraph(entityClass);
+		final Map<String, Subgraph<?>> subgraphs = new HashMap<>();
+
+		for (final String path : attributePaths) {
+			final String[] parts = path.split("\\.");
+			Subgraph<?> parent = null;
+			String prefix = "";
+
+			for (int i = 0; i < parts.length - 1; i++) {
+				prefix = prefix + "." + parts[i];
+				if (!subgraphs.containsKey(prefix)) {
+					subgraphs.put(prefix, addSubgraph(graph, parent, parts[i]));
+				}
+				parent = subgraphs.get(prefix);
+			}
+
+			final String leaf = parts[parts.length - 1];
+			if (parent == null) {
+				graph.addAttributeNodes(leaf);
+			} else {
+				parent.addAttributeNodes(leaf);
+			}
+		}
+
+		return graph;
+	}
+
+	private static Subgraph<?> addSubgraph(final EntityGraph<?> graph, final Subgraph<?> parent,
+			final String attribute) {
+		if (parent == null) {
+			return graph.addSubgraph(attribute);
+		}
+
+		return parent.addSubgraph(attribute);
+	}
+
+	@Override
+	public String toString() {
+		final ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
+
+		builder.append("graphName", graphName);
+		builder.append("attributePaths", attributePaths);
+		builder.append("hint", hint);
+
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.beans.Introspector;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.reflect.TypeToken;
+
+public final class GeneratedConverter<Model, DTO> extends AbstractConverter<Model, DTO> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(GeneratedConverter.class);
+
+	private static final String VERSION = "version";
+
+	private final Class<DTO> dtoClass;
+	private final Supplier<Object> factory;
+	private final PropertyCopier[] copiers;
+	private final BiConsumer<Object, Object> versionSetter;
+
+	private GeneratedConverter(final Class<DTO> dtoClass, final Supplier<Object> factory,
+			final List<PropertyCopier> copiers, final BiConsumer<Object, Object> versionSetter) {
+		this.dtoClass = dtoClass;
+		this.factory = factory;
+		this.copiers = copiers.toArray(new PropertyCopier[copiers.size()]);
+		this.versionSetter = versionSetter;
+	}
+
+	public static <Model, DTO> GeneratedConverter<Model, DTO> of(final Class<Model> modelClass,
+			final Class<DTO> dtoClass) {
+		return of(MethodHandles.lookup(), modelClass, dtoClass);
+	}
+
+	public static <Model, DTO> GeneratedConverter<Model, DTO> of(final Lookup lookup, final Class<Model> modelClass,
+			final Class<DTO> dtoClass) {
+		LOG.trace("of: {} -> {}", modelClass, dtoClass);
+
+		checkNotNull(lookup, "lookup");
+		checkNotNull(modelClass, "modelClass");
+		checkNotNull(dtoClass, "dtoClass");
+
+		try {
+			final Supplier<Object> factory = PropertyAccessors.constructor(lookup, dtoClass.getConstructor());
+
+			final List<PropertyCopier> copiers = new ArrayList<>();
+			BiConsumer<Object, Object> versionSetter = null;
+
+			for (final Method setter : dtoClass.getMethods()) {
+				if (!isSetter(setter)) {
+					continue;
+				}
+
+				final String property = Introspector.decapitalize(setter.getName().substring(3));
+				if (VERSION.equals(property) && AbstractEntity.class.isAssignableFrom(modelClass)) {
+					versionSetter = PropertyAccessors.setter(lookup, setter);
+					continue;
+				}
+
+				final Method getter = findGetter(modelClass, property,
+						TypeToken.of(dtoClass).resolveType(setter.getGenericParameterTypes()[0]));
+				if (getter == null) {
+					LOG.debug("No matching getter on {} for property: {}", modelClass.getName(), property);
+					continue;
+				}
+
+				copiers.add(new PropertyCopier(PropertyAccessors.getter(lookup, getter),
+						PropertyAccessors.setter(lookup, setter)));
+			}
+
+			return new GeneratedConverter<>(dtoClass, factory, copiers, versionSetter);
+		} catch (final NoSuchMethodException | IllegalAccessException e) {
+			throw new IllegalArgumentException("Cannot generate converter from " + modelClass.getName() + " to "
+					+ dtoClass.getName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	protected DTO createDTO(final Model model, final boolean incrementVersion) {
+		checkNotNull(model, "model");
+
+		final Object dto = factory.get();
+
+		for (final PropertyCopier copier : copiers) {
+			copier.copy(model, dto);
+		}
+
+		if (versionSetter != null) {
+			long version = ((AbstractEntity) model).getVersion();
+			if (incrementVersion) {
+				version++;
+			}
+			versionSetter.accept(dto, version);
+		}
+
+		return dtoClass.cast(dto);
+	}
+
+	/**
+	 * Skips the bridge methods that the compiler adds for generic and covariant setters, which would copy a property
+	 * twice or through an erased parameter type.
+	 */
+	private static boolean isSetter(final Method method) {
+		return !method.isBridge()
+				&& !method.isSynthetic()
+				&& method.getName().startsWith("set")
+				&& method.getName().length() > 3
+				&& method.getParameterTypes().length == 1
+				&& !Modifier.isStatic(method.getModifiers());
+	}
+
+	private static Method findGetter(final Class<?> modelClass, final String property, final TypeToken<?> type) {
+		final String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+
+		for (final String prefix : new String[] { "get", "is" }) {
+			try {
+				final Method getter = modelClass.getMethod(prefix + suffix);
+				if (!Modifier.isStatic(getter.getModifiers())
+						&& isCompatible(TypeToken.of(modelClass).resolveType(getter.getGenericReturnType()), type)) {
+					return getter;
+				}
+			} catch (final NoSuchMethodException e) {
+				LOG.trace("No getter: {}{}", prefix, suffix);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Compares the generic types, so a {@code List<Entity>} getter does not feed a {@code List<DTO>} setter.
+	 */
+	private static boolean isCompatible(final TypeToken<?> source, final TypeToken<?> target) {
+		// Unboxing a null wrapper into a primitive setter would fail at conversion time.
+		if (target.isPrimitive() && !source.isPrimitive()) {
+			return false;
+		}
+
+		return target.wrap().isAssignableFrom(source.wrap());
+	}
+
+	private static final class PropertyCopier {
+
+		private final Function<Object, Object> getter;
+		private final BiConsumer<Object, Object> setter;
+
+		PropertyCopier(final Function<Object, Object> getter, final BiConsumer<Object, Object> setter) {
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		void copy(final Object model, final Object dto) {
+			setter.accept(dto, getter.apply(model));
+		}
+
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.hartveld.commons.db.metrics.StatementCounter;
+
+public final class HibernateProperties {
+
+	public static final String JDBC_BATCH_SIZE = "hibernate.jdbc.batch_size";
+	public static final String ORDER_INSERTS = "hibernate.order_inserts";
+	public static final String ORDER_UPDATES = "hibernate.order_updates";
+	public static final String BATCH_VERSIONED_DATA = "hibernate.jdbc.batch_versioned_data";
+
+	public static final String USE_SECOND_LEVEL_CACHE = "hibernate.cache.use_second_level_cache";
+	public static final String CACHE_REGION_FACTORY = "hibernate.cache.region.factory_class";
+	public static final String CACHE_CONCURRENCY_STRATEGY = "hibernate.cache.default_cache_concurrency_strategy";
+	public static final String SHARED_CACHE_MODE = "javax.persistence.sharedCache.mode";
+	public static final String GENERATE_STATISTICS = "hibernate.generate_statistics";
+
+	public static final String DEFAULT_BATCH_FETCH_SIZE = "hibernate.default_batch_fetch_size";
+	public static final String INTERCEPTOR = "hibernate.ejb.interceptor";
+
+	public static final String SHARD = "com.hartveld.commons.db.shard";
+
+	private HibernateProperties() {}
+
+	public static Map<String, String> batching(final int batchSize) {
+		checkArgument(batchSize > 0, "batchSize must be positive");
+
+		return ImmutableMap.of(
+				JDBC_BATCH_SIZE, Integer.toString(batchSize),
+				ORDER_INSERTS, Boolean.TRUE.toString(),
+				ORDER_UPDATES, Boolean.TRUE.toString(),
+				BATCH_VERSIONED_DATA, Boolean.TRUE.toString());
+	}
+
+	public static Map<String, String> secondLevelCache() {
+		return ImmutableMap.<String, String> builder()
+				.put(USE_SECOND_LEVEL_CACHE, Boolean.TRUE.toString())
+				.put(CACHE_REGION_FACTORY, "org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory")
+				.put(CACHE_CONCURRENCY_STRATEGY, "read-write")
+				.put(SHARED_CACHE_MODE, "ENABLE_SELECTIVE")
+				.put(GENERATE_STATISTICS, Boolean.TRUE.toString())
+				.build();
+	}
+
+	/**
+	 * Loads lazy associations of up to {@code batchSize} entities with one statement, which bounds the cost of
+	 * associations that a fetch plan leaves out.
+	 */
+	public static Map<String, String> batchFetching(final int batchSize) {
+		checkArgument(batchSize > 0, "batchSize must be positive");
+
+		return ImmutableMap.of(DEFAULT_BATCH_FETCH_SIZE, Integer.toString(batchSize));
+	}
+
+	public static Map<String, String> statementCounting() {
+		return ImmutableMap.of(INTERCEPTOR, StatementCounter.class.getName());
+	}
+
+	/**
+	 * Sets the shard number that {@link ShardedEntityBase} ids of this persistence unit are encoded with. It must be
+	 * the index of the persistence unit in the {@link ShardedDAO}.
+	 */
+	public static Map<String, String> shard(final int shard) {
+		checkArgument(shard >= 0 && shard < ShardedIdGenerator.MAX_SHARDS, "shard must be non-negative and less than %s",
+				ShardedIdGenerator.MAX_SHARDS);
+
+		return ImmutableMap.of(SHARD, Integer.toString(shard));
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+final class NamedQueryRegistry {
+
+	static final int MAX_QUERIES = 1024;
+
+	private static final Logger LOG = LoggerFactory.getLogger(NamedQueryRegistry.class);
+
+	/**
+	 * Registries must not refer to their factory, or the weak keys would never be collected.
+	 */
+	private static final LoadingCache<EntityManagerFactory, NamedQueryRegistry> REGISTRIES = CacheBuilder.newBuilder()
+			.weakKeys()
+			.build(new CacheLoader<EntityManagerFactory, NamedQueryRegistry>() {
+				@Override
+				public NamedQueryRegistry load(final EntityManagerFactory emf) {
+					return new NamedQueryRegistry();
+				}
+			});
+
+	private final Map<String, String> queries = new ConcurrentHashMap<>();
+
+	private NamedQueryRegistry() {}
+
+	static NamedQueryRegistry of(final EntityManagerFactory emf) {
+		checkNotNull(emf, "emf");
+
+		try {
+			return REGISTRIES.get(emf);
+		} catch (final ExecutionException | UncheckedExecutionException e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	boolean contains(final String name) {
+		return queries.containsKey(name);
+	}
+
+	boolean isFull() {
+		return queries.size() >= MAX_QUERIES;
+	}
+
+	/**
+	 * Registers the query under the given name. Registering a name again is a no-op for the same JPQL, and fails for
+	 * different JPQL, as the first query would otherwise silently run in its place.
+	 */
+	void register(final EntityManager em, final String name, final String jpql) {
+		checkNotNull(em, "em");
+		checkArgument(isNotEmpty(name), "name must be non-empty");
+		checkArgument(isNotEmpty(jpql), "jpql must be non-empty");
+
+		if (isRegistered(name, jpql)) {
+			return;
+		}
+
+		LOG.debug("Registering named query: {} - {}", name, jpql);
+
+		// Creating the query parses it, so invalid queries fail here rather than on first execution.
+		final Query query = em.createQuery(jpql);
+
+		synchronized (this) {
+			if (!isRegistered(name, jpql)) {
+				em.getEntityManagerFactory().addNamedQuery(name, query);
+				queries.put(name, jpql);
+			}
+		}
+	}
+
+	private boolean isRegistered(final String name, final String jpql) {
+		final String registered = queries.get(name);
+		if (registered == null) {
+			return false;
+		}
+
+		if (!registered.equals(jpql)) {
+			throw new IllegalStateException("Named query " + name + " is already registered as: " + registered);
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.StaleStateException;
+import org.hibernate.proxy.HibernateProxy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs units of work in their own transaction and retries them when they lose an optimistic lock race on an entity
+ * version. Between attempts the transaction is rolled back and the entity manager cleared, so every attempt must look
+ * up the entities it changes again, through DAOs on the same entity manager.
+ */
+public class OptimisticRetryExecutor {
+
+	public static final String UNKNOWN_ENTITY = "unknown";
+
+	private static final Logger LOG = LoggerFactory.getLogger(OptimisticRetryExecutor.class);
+
+	private final EntityManager em;
+	private final RetryPolicy policy;
+	private final ConflictStatistics statistics;
+
+	public OptimisticRetryExecutor(final EntityManager em) {
+		this(em, RetryPolicy.DEFAULT);
+	}
+
+	public OptimisticRetryExecutor(final EntityManager em, final RetryPolicy policy) {
+		this(em, policy, new ConflictStatistics());
+	}
+
+	public OptimisticRetryExecutor(final EntityManager em, final RetryPolicy policy,
+			final ConflictStatistics statistics) {
+		checkNotNull(em, "em");
+		checkNotNull(policy, "policy");
+		checkNotNull(statistics, "statistics");
+
+		this.em = em;
+		this.policy = policy;
+		this.statistics = statistics;
+	}
+
+	public final EntityManager getEntityManager() {
+		return em;
+	}
+
+	public final RetryPolicy getPolicy() {
+		return policy;
+	}
+
+	public final ConflictStatistics getStatistics() {
+		return statistics;
+	}
+
+	public final void execute(final Runnable work) {
+		checkNotNull(work, "work");
+
+		execute(() -> {
+			work.run();
+			return null;
+		});
+	}
+
+	public final <R> R execute(final Supplier<R> work) {
+		LOG.trace("execute: {}", work);
+
+		checkNotNull(work, "work");
+		checkState(!em.getTransaction().isActive(), "Cannot retry work that joins an active transaction");
+
+		statistics.recordExecution();
+
+		for (int attempt = 1;; attempt++) {
+			try {
+				return attempt(work);
+			} catch (final PersistenceException | StaleStateException e) {
+				final String entityName = conflictingEntity(e);
+				if (entityName == null) {
+					throw e;
+				}
+
+				statistics.recordConflict(entityName);
+
+				if (attempt >= policy.getMaxAttempts()) {
+					LOG.warn("Optimistic lock conflict on {} after {} attempts, giving up", entityName, attempt);
+					statistics.recordFailure();
+					throw e;
+				}
+
+				LOG.debug("Optimistic lock conflict on {}, attempt {} of {}", entityName, attempt,
+						policy.getMaxAttempts());
+				backoff(attempt, e);
+			}
+		}
+	}
+
+	private <R> R attempt(final Supplier<R> work) {
+		final EntityTransaction tx = em.getTransaction();
+		boolean committed = false;
+
+		tx.begin();
+		try {
+			final R result = work.get();
+			tx.commit();
+			committed = true;
+
+			return result;
+		} finally {
+			if (!committed) {
+				if (tx.isActive()) {
+					tx.rollback();
+				}
+				em.clear();
+			}
+		}
+	}
+
+	private void backoff(final int attempt, final RuntimeException conflict) {
+		final long nanos = policy.backoffNanos(attempt);
+		if (nanos == 0) {
+			return;
+		}
+
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			conflict.addSuppressed(e);
+			throw conflict;
+		}
+	}
+
+	/**
+	 * Returns the name of the entity that caused an optimistic lock conflict, or {@code null} if the exception does
+	 * not come from one.
+	 */
+	private static String conflictingEntity(final Throwable exception) {
+		boolean conflict = false;
+		String entityName = null;
+
+		for (Throwable t = exception; t != null; t = t.getCause()) {
+			if (t instanceof StaleObjectStateException) {
+				return ((StaleObjectStateException) t).getEntityName();
+			}
+			if (t instanceof StaleStateException) {
+				conflict = true;
+			}
+			if (t instanceof OptimisticLockException) {
+				conflict = true;
+				if (entityName == null) {
+					entityName = entityName(((OptimisticLockException) t).getEntity());
+				}
+			}
+		}
+
+		if (!conflict) {
+			return null;
+		}
+		if (entityName == null) {
+			return UNKNOWN_ENTITY;
+		}
+
+		return entityName;
+	}
+
+	private static String entityName(final Object entity) {
+		if (entity == null) {
+			return null;
+		}
+		if (entity instanceof HibernateProxy) {
+			return ((HibernateProxy) entity).getHibernateLazyInitializer().getEntityName();
+		}
+
+		return entity.getClass().getName();
+	}
+
+}
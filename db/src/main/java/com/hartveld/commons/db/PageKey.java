@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.StringUtils.isNotEmpty;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+public final class PageKey {
+
+	public static final String ID = "id";
+
+	private final String attribute;
+	private final Object value;
+	private final long id;
+	private final boolean first;
+
+	private PageKey(final String attribute, final Object value, final long id, final boolean first) {
+		checkArgument(isNotEmpty(attribute), "attribute must be non-empty");
+
+		this.attribute = attribute;
+		this.value = value;
+		this.id = id;
+		this.first = first;
+	}
+
+	public static PageKey first() {
+		return first(ID);
+	}
+
+	/**
+	 * Starts paging in order of the given attribute, with the id as tie-breaker. The attribute must not be optional,
+	 * as rows with a null value cannot be sought past.
+	 */
+	public static PageKey first(final String attribute) {
+		return new PageKey(attribute, null, 0, true);
+	}
+
+	public static PageKey afterId(final long id) {
+		return new PageKey(ID, id, id, false);
+	}
+
+	public static PageKey after(final String attribute, final Object value, final long id) {
+		checkNotNull(value, "value");
+
+		return new PageKey(attribute, value, id, false);
+	}
+
+	public String getAttribute() {
+		return attribute;
+	}
+
+	public Object getValue() {
+		return value;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public boolean isFirst() {
+		return first;
+	}
+
+	public boolean isOrderedById() {
+		return ID.equals(attribute);
+	}
+
+	@Override
+	public String toString() {
+		final ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
+
+		builder.append("attribute", attribute);
+		builder.append("value", value);
+		builder.append("id", id);
+		builder.append("first", first);
+
+		return builder.toString();
+	}
+
+}
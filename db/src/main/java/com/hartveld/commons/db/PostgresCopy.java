@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+import org.apache.commons.lang3.StringUtils;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Loads rows with the PostgreSQL COPY protocol. Only this class refers to the PostgreSQL driver, which is an optional
+ * dependency; {@link BulkLoader} checks that the driver is present before using it.
+ */
+final class PostgresCopy {
+
+	private static final String NULL = "\\N";
+
+	private PostgresCopy() {}
+
+	static boolean supports(final Connection connection) throws SQLException {
+		return connection.isWrapperFor(BaseConnection.class);
+	}
+
+	/**
+	 * Copies the entities in batches of {@code batchSize} rows. Each batch is rendered before its COPY starts, so id
+	 * generators can still use the connection.
+	 */
+	static <T> long copy(final Connection connection, final BulkLoadMapping<T> mapping,
+			final Iterator<? extends T> entities, final int batchSize) throws SQLException {
+		final CopyManager manager = new CopyManager(connection.unwrap(BaseConnection.class));
+		final String sql = "copy " + mapping.getTableName() + " (" + StringUtils.join(mapping.getColumns(), ", ")
+				+ ") from stdin";
+
+		final StringBuilder rows = new StringBuilder();
+		int pending = 0;
+		long loaded = 0;
+
+		while (entities.hasNext()) {
+			appendRow(rows, mapping.values(entities.next()));
+			pending++;
+
+			if (pending == batchSize || !entities.hasNext()) {
+				loaded += copyIn(manager, sql, rows);
+				rows.setLength(0);
+				pending = 0;
+			}
+		}
+
+		return loaded;
+	}
+
+	private static long copyIn(final CopyManager manager, final String sql, final CharSequence rows)
+			throws SQLException {
+		try {
+			return manager.copyIn(sql, new StringReader(rows.toString()));
+		} catch (final IOException e) {
+			throw new SQLException("Failed to read rows for " + sql, e);
+		}
+	}
+
+	/**
+	 * Appends the values in COPY text format. Values that Hibernate binds as streams or LOBs cannot be rendered and
+	 * fail with {@link UnsupportedOperationException}.
+	 */
+	static void appendRow(final StringBuilder rows, final Object[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				rows.append('\t');
+			}
+			appendValue(rows, values[i]);
+		}
+		rows.append('\n');
+	}
+
+	private static void appendValue(final StringBuilder rows, final Object value) {
+		if (value == null) {
+			rows.append(NULL);
+		} else if (value instanceof byte[]) {
+			rows.append("\\\\x").append(BaseEncoding.base16().encode((byte[]) value));
+		} else if (value instanceof Boolean) {
+			rows.append((Boolean) value ? 't' : 'f');
+		} else if (value instanceof BigDecimal) {
+			rows.append(((BigDecimal) value).toPlainString());
+		} else if (value instanceof Reader || value instanceof InputStream || value instanceof Clob
+				|| value instanceof Blob) {
+			throw new UnsupportedOperationException("Cannot copy values bound as " + value.getClass().getName());
+		} else {
+			appendText(rows, value.toString());
+		}
+	}
+
+	private static void appendText(final StringBuilder rows, final String text) {
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch (c) {
+			case '\\':
+				rows.append("\\\\");
+				break;
+			case '\t':
+				rows.append("\\t");
+				break;
+			case '\n':
+				rows.append("\\n");
+				break;
+			case '\r':
+				rows.append("\\r");
+				break;
+			default:
+				rows.append(c);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.primitives.Primitives;
+
+final class PropertyAccessors {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PropertyAccessors.class);
+
+	private PropertyAccessors() {}
+
+	@SuppressWarnings("unchecked")
+	static Function<Object, Object> getter(final Lookup lookup, final Method method) throws IllegalAccessException {
+		final MethodHandle handle = lookup.unreflect(method);
+
+		try {
+			final CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+					MethodType.methodType(Function.class),
+					MethodType.methodType(Object.class, Object.class),
+					handle,
+					MethodType.methodType(Primitives.wrap(method.getReturnType()), method.getDeclaringClass()));
+
+			return (Function<Object, Object>) site.getTarget().invoke();
+		} catch (final LambdaConversionException | LinkageError e) {
+			LOG.debug("Falling back to method handle for getter: {} - {}", method, e.getMessage());
+			return invokingGetter(handle.asType(MethodType.methodType(Object.class, Object.class)));
+		} catch (final Throwable e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static BiConsumer<Object, Object> setter(final Lookup lookup, final Method method) throws IllegalAccessException {
+		final MethodHandle handle = lookup.unreflect(method);
+
+		try {
+			final CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+					MethodType.methodType(BiConsumer.class),
+					MethodType.methodType(void.class, Object.class, Object.class),
+					handle,
+					MethodType.methodType(void.class, method.getDeclaringClass(),
+							Primitives.wrap(method.getParameterTypes()[0])));
+
+			return (BiConsumer<Object, Object>) site.getTarget().invoke();
+		} catch (final LambdaConversionException | LinkageError e) {
+			LOG.debug("Falling back to method handle for setter: {} - {}", method, e.getMessage());
+			return invokingSetter(handle.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+		} catch (final Throwable e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static Supplier<Object> constructor(final Lookup lookup, final Constructor<?> constructor)
+			throws IllegalAccessException {
+		final MethodHandle handle = lookup.unreflectConstructor(constructor);
+
+		try {
+			final CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+					MethodType.methodType(Supplier.class),
+					MethodType.methodType(Object.class),
+					handle,
+					MethodType.methodType(constructor.getDeclaringClass()));
+
+			return (Supplier<Object>) site.getTarget().invoke();
+		} catch (final LambdaConversionException | LinkageError e) {
+			LOG.debug("Falling back to method handle for constructor: {} - {}", constructor, e.getMessage());
+			return invokingConstructor(handle.asType(MethodType.methodType(Object.class)));
+		} catch (final Throwable e) {
+			throw new IllegalStateException(e.getMessage(), e);
+		}
+	}
+
+	private static Function<Object, Object> invokingGetter(final MethodHandle handle) {
+		return target -> {
+			try {
+				return handle.invokeExact(target);
+			} catch (final Throwable e) {
+				throw propagate(e);
+			}
+		};
+	}
+
+	private static BiConsumer<Object, Object> invokingSetter(final MethodHandle handle) {
+		return (target, value) -> {
+			try {
+				handle.invokeExact(target, value);
+			} catch (final Throwable e) {
+				throw propagate(e);
+			}
+		};
+	}
+
+	private static Supplier<Object> invokingConstructor(final MethodHandle handle) {
+		return () -> {
+			try {
+				return handle.invokeExact();
+			} catch (final Throwable e) {
+				throw propagate(e);
+			}
+		};
+	}
+
+	private static RuntimeException propagate(final Throwable e) {
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+
+		return new IllegalStateException(e.getMessage(), e);
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Hands out read-only entity managers on replica databases, round-robin. Meant to be shared by all
+ * {@link RoutingDAO}s of an application.
+ */
+public final class ReplicaPool {
+
+	private final List<EntityManagerFactory> replicas;
+	private final AtomicInteger next = new AtomicInteger();
+
+	public ReplicaPool(final EntityManagerFactory... replicas) {
+		this(ImmutableList.copyOf(replicas));
+	}
+
+	public ReplicaPool(final List<EntityManagerFactory> replicas) {
+		checkNotNull(replicas, "replicas");
+		checkArgument(!replicas.isEmpty(), "replicas must be non-empty");
+
+		this.replicas = ImmutableList.copyOf(replicas);
+	}
+
+	public List<EntityManagerFactory> getReplicas() {
+		return replicas;
+	}
+
+	/**
+	 * Returns a new entity manager on the next replica. Entities loaded through it are read-only and it never
+	 * flushes.
+	 */
+	public EntityManager createEntityManager() {
+		final int index = Math.floorMod(next.getAndIncrement(), replicas.size());
+		final EntityManager em = replicas.get(index).createEntityManager();
+
+		final Session session = em.unwrap(Session.class);
+		session.setDefaultReadOnly(true);
+		session.setFlushMode(FlushMode.MANUAL);
+
+		return em;
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * How often and how patiently {@link OptimisticRetryExecutor} retries conflicting work. The backoff doubles after
+ * every conflict up to the maximum, and a random part of it (the jitter, between 0 and 1) is taken off so colliding
+ * writers do not retry in lockstep.
+ */
+public final class RetryPolicy {
+
+	public static final RetryPolicy DEFAULT = new RetryPolicy(5, 10, 1000, TimeUnit.MILLISECONDS, 0.5);
+
+	private final int maxAttempts;
+	private final long initialBackoffNanos;
+	private final long maxBackoffNanos;
+	private final double jitter;
+
+	public RetryPolicy(final int maxAttempts, final long initialBackoff, final long maxBackoff, final TimeUnit unit,
+			final double jitter) {
+		checkArgument(maxAttempts > 0, "maxAttempts must be positive");
+		checkArgument(initialBackoff >= 0, "initialBackoff must not be negative");
+		checkArgument(maxBackoff >= initialBackoff, "maxBackoff must not be less than initialBackoff");
+		checkNotNull(unit, "unit");
+		checkArgument(jitter >= 0 && jitter <= 1, "jitter must be between 0 and 1");
+
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffNanos = unit.toNanos(initialBackoff);
+		this.maxBackoffNanos = unit.toNanos(maxBackoff);
+		this.jitter = jitter;
+	}
+
+	public static RetryPolicy withoutBackoff(final int maxAttempts) {
+		return new RetryPolicy(maxAttempts, 0, 0, TimeUnit.MILLISECONDS, 0);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public long getInitialBackoffNanos() {
+		return initialBackoffNanos;
+	}
+
+	public long getMaxBackoffNanos() {
+		return maxBackoffNanos;
+	}
+
+	public double getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * Returns the time to wait after the given failed attempt, starting at 1.
+	 */
+	public long backoffNanos(final int attempt) {
+		checkArgument(attempt > 0, "attempt must be positive");
+
+		final int doublings = attempt - 1;
+
+		long backoff = maxBackoffNanos;
+		if (initialBackoffNanos == 0 || doublings < Long.numberOfLeadingZeros(initialBackoffNanos) - 1) {
+			backoff = Math.min(maxBackoffNanos, initialBackoffNanos << doublings);
+		}
+
+		return backoff - (long) (backoff * jitter * ThreadLocalRandom.current().nextDouble());
+	}
+
+	@Override
+	public String toString() {
+		final ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
+
+		builder.append("maxAttempts", maxAttempts);
+		builder.append("initialBackoffNanos", initialBackoffNanos);
+		builder.append("maxBackoffNanos", maxBackoffNanos);
+		builder.append("jitter", jitter);
+
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends reads to a replica and writes to the primary DAO. A routing DAO is one unit of work: it takes a single
+ * replica entity manager from the pool on its first read, and once anything is written through it, or
+ * {@link #stickToPrimary()} is called, all further reads go to the primary so they see those writes. Entities read
+ * from the replica are read-only snapshots; load them after {@link #stickToPrimary()} to change them.
+ * <p>
+ * Custom queries can be run on {@link #reader()}, which returns the DAO that reads are currently routed to.
+ * {@link #close()} closes the replica entity manager, never the primary one.
+ */
+public class RoutingDAO<T extends AbstractEntity> implements DAO<T>, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RoutingDAO.class);
+
+	private final DAO<T> primary;
+	private final DAOFactory<T> daoFactory;
+	private final ReplicaPool replicas;
+
+	private EntityManager replicaEntityManager;
+	private DAO<T> replica;
+
+	private boolean stickToPrimary;
+
+	public RoutingDAO(final DAO<T> primary, final DAOFactory<T> daoFactory, final ReplicaPool replicas) {
+		checkNotNull(primary, "primary");
+		checkNotNull(daoFactory, "daoFactory");
+		checkNotNull(replicas, "replicas");
+
+		this.primary = primary;
+		this.daoFactory = daoFactory;
+		this.replicas = replicas;
+	}
+
+	public final DAO<T> reader() {
+		if (stickToPrimary) {
+			return primary;
+		}
+
+		if (replica == null) {
+			replicaEntityManager = replicas.createEntityManager();
+			replica = daoFactory.create(replicaEntityManager);
+		}
+
+		return replica;
+	}
+
+	public final DAO<T> writer() {
+		if (!stickToPrimary) {
+			stickToPrimary();
+		}
+
+		return primary;
+	}
+
+	public final void stickToPrimary() {
+		LOG.trace("stickToPrimary:");
+
+		stickToPrimary = true;
+	}
+
+	public final boolean isStickToPrimary() {
+		return stickToPrimary;
+	}
+
+	@Override
+	public final EntityManager getEntityManager() {
+		return primary.getEntityManager();
+	}
+
+	@Override
+	public final void flush() {
+		writer().flush();
+	}
+
+	@Override
+	public final Class<T> getEntityClass() {
+		return primary.getEntityClass();
+	}
+
+	@Override
+	public final String getEntityName() {
+		return primary.getEntityName();
+	}
+
+	@Override
+	public final boolean isReadOnly() {
+		return primary.isReadOnly();
+	}
+
+	@Override
+	public final long count() {
+		return reader().count();
+	}
+
+	@Override
+	public final List<T> retrieveAll() {
+		return reader().retrieveAll();
+	}
+
+	@Override
+	public final List<T> retrieveAll(final boolean readOnly) {
+		return reader().retrieveAll(readOnly);
+	}
+
+	@Override
+	public final List<T> retrieveAll(final FetchPlan plan) {
+		return reader().retrieveAll(plan);
+	}
+
+	@Override
+	public final <DTO> List<DTO> retrieveAll(final ProjectionConverter<? super T, DTO> converter) {
+		return reader().retrieveAll(converter);
+	}
+
+	@Override
+	public final <DTO> List<DTO> retrieveAll(final QueryPredicate<T> predicate,
+			final ProjectionConverter<? super T, DTO> converter) {
+		return reader().retrieveAll(predicate, converter);
+	}
+
+	@Override
+	public final Stream<T> streamAll() {
+		return reader().streamAll();
+	}
+
+	@Override
+	public final Stream<T> streamAll(final int fetchSize) {
+		return reader().streamAll(fetchSize);
+	}
+
+	@Override
+	public final T retrieveById(final long id) {
+		return reader().retrieveById(id);
+	}
+
+	@Override
+	public final T retrieveById(final long id, final boolean readOnly) {
+		return reader().retrieveById(id, readOnly);
+	}
+
+	@Override
+	public final T retrieveById(final long id, final FetchPlan plan) {
+		return reader().retrieveById(id, plan);
+	}
+
+	@Override
+	public final List<T> retrieveByIds(final Collection<Long> ids) {
+		return reader().retrieveByIds(ids);
+	}
+
+	@Override
+	public final List<T> retrieveByIds(final Collection<Long> ids, final FetchPlan plan) {
+		return reader().retrieveByIds(ids, plan);
+	}
+
+	@Override
+	public final Map<Long, T> retrieveMapByIds(final Collection<Long> ids) {
+		return reader().retrieveMapByIds(ids);
+	}
+
+	@Override
+	public final Page<T> retrievePage(final int size) {
+		return reader().retrievePage(size);
+	}
+
+	@Override
+	public final Page<T> retrievePage(final PageKey key, final int size) {
+		return reader().retrievePage(key, size);
+	}
+
+	@Override
+	public final void persist(final AbstractEntity entity) {
+		writer().persist(entity);
+	}
+
+	@Override
+	public final void persistAll(final AbstractEntity... entities) {
+		writer().persistAll(entities);
+	}
+
+	@Override
+	public final void persistAll(final Collection<? extends AbstractEntity> entities) {
+		writer().persistAll(entities);
+	}
+
+	@Override
+	public final int persistAll(final Collection<? extends AbstractEntity> entities, final int batchSize) {
+		return writer().persistAll(entities, batchSize);
+	}
+
+	@Override
+	public final void remove(final AbstractEntity entity) {
+		writer().remove(entity);
+	}
+
+	@Override
+	public final void removeById(final long id) {
+		writer().removeById(id);
+	}
+
+	@Override
+	public final int removeByIds(final Collection<Long> ids) {
+		return writer().removeByIds(ids);
+	}
+
+	@Override
+	public final int removeWhere(final QueryPredicate<T> predicate) {
+		return writer().removeWhere(predicate);
+	}
+
+	@Override
+	public void close() {
+		LOG.trace("close:");
+
+		if (replicaEntityManager != null) {
+			replicaEntityManager.close();
+			replicaEntityManager = null;
+			replica = null;
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Base class for entities whose ids are taken from a per-entity database
+ * sequence named <code>&lt;EntityName&gt;_SEQ</code>. Ids are allocated in
+ * blocks of {@value #ALLOCATION_SIZE} using the pooled-lo optimizer, so unlike
+ * {@link EntityBase} the inserts can be grouped into JDBC batches.
+ * <p>
+ * The sequence must be incremented by the allocation size, for example:
+ *
+ * <pre>
+ * &lt;changeSet id="create-Order_SEQ" author="..."&gt;
+ *     &lt;createSequence sequenceName="Order_SEQ" startValue="1" incrementBy="50" /&gt;
+ * &lt;/changeSet&gt;
+ * </pre>
+ */
+@MappedSuperclass
+public class SequenceEntityBase extends AbstractEntity {
+
+	public static final int ALLOCATION_SIZE = 50;
+
+	@Id
+	@GeneratedValue(generator = "sequence-entity-base")
+	@GenericGenerator(name = "sequence-entity-base", strategy = "enhanced-sequence", parameters = {
+			@Parameter(name = SequenceStyleGenerator.CONFIG_PREFER_SEQUENCE_PER_ENTITY, value = "true"),
+			@Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo"),
+			@Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "" + ALLOCATION_SIZE) })
+	private long id;
+
+	@Override
+	public final long getId() {
+		return id;
+	}
+
+}
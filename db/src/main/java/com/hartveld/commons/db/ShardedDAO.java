@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Partitions entities over one DAO per shard, each on the entity manager of its own database. The shard at index
+ * {@code n} must be configured with {@link HibernateProperties#shard(int) shard(n)}, so the ids it generates encode
+ * {@code n}. New entities go to the shard selected by the routing key, or round-robin without one; everything else is
+ * routed by id. {@code count}, {@code retrieveAll} and {@code removeWhere} scatter over all shards and gather the
+ * results in shard order.
+ * <p>
+ * By default the shards are visited one after the other on the caller's thread, so every shard takes part in the
+ * transaction the caller has on its entity manager, including a container-managed one. With an executor the shards
+ * are queried in parallel on its threads: resource-local transactions begun on the shard entity managers still
+ * apply, but container-managed transactions and other thread-bound state do not, and the caller must not use a shard
+ * entity manager until the call returns.
+ * <p>
+ * There is no distributed transaction: callers begin and commit a transaction on every shard that is written to.
+ * Paging over shards is not supported, and neither is {@link #getEntityManager()}; use {@link #getShards()}.
+ */
+public class ShardedDAO<T extends ShardedEntityBase> implements DAO<T> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ShardedDAO.class);
+
+	private final List<DAO<T>> shards;
+	private final Function<? super T, ?> routingKey;
+	private final Executor executor;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	public ShardedDAO(final List<? extends DAO<T>> shards) {
+		this(shards, null);
+	}
+
+	public ShardedDAO(final List<? extends DAO<T>> shards, final Function<? super T, ?> routingKey) {
+		this(shards, routingKey, Runnable::run);
+	}
+
+	/**
+	 * @param routingKey selects the shard of new entities by hash, or {@code null} to spread them round-robin.
+	 * @param executor runs the work on each shard of a scatter; pass one with a thread per shard to query shards in
+	 *            parallel.
+	 */
+	public ShardedDAO(final List<? extends DAO<T>> shards, final Function<? super T, ?> routingKey,
+			final Executor executor) {
+		checkNotNull(shards, "shards");
+		checkArgument(!shards.isEmpty(), "shards must be non-empty");
+		checkArgument(shards.size() <= ShardedIdGenerator.MAX_SHARDS, "At most %s shards are supported",
+				ShardedIdGenerator.MAX_SHARDS);
+		checkNotNull(executor, "executor");
+
+		this.shards = ImmutableList.copyOf(shards);
+		this.routingKey = routingKey;
+		this.executor = executor;
+	}
+
+	public final List<DAO<T>> getShards() {
+		return shards;
+	}
+
+	public final DAO<T> shardFor(final long id) {
+		final int shard = ShardedIdGenerator.shardOf(id);
+		if (shard >= shards.size()) {
+			throw new NoResultException("Entity of type '" + getEntityName() + "' with id '" + id
+					+ "' belongs to unknown shard " + shard);
+		}
+
+		return shards.get(shard);
+	}
+
+	@Override
+	public final EntityManager getEntityManager() {
+		throw new UnsupportedOperationException("A sharded DAO has an entity manager per shard");
+	}
+
+	@Override
+	public final void flush() {
+		for (final DAO<T> shard : shards) {
+			shard.flush();
+		}
+	}
+
+	@Override
+	public final Class<T> getEntityClass() {
+		return shards.get(0).getEntityClass();
+	}
+
+	@Override
+	public final String getEntityName() {
+		return shards.get(0).getEntityName();
+	}
+
+	@Override
+	public final boolean isReadOnly() {
+		return shards.get(0).isReadOnly();
+	}
+
+	@Override
+	public final long count() {
+		LOG.trace("count:");
+
+		long count = 0;
+		for (final Long shardCount : scatter(DAO::count)) {
+			count += shardCount;
+		}
+
+		return count;
+	}
+
+	@Override
+	public final List<T> retrieveAll() {
+		LOG.trace("retrieveAll:");
+
+		return gather(scatter(DAO::retrieveAll));
+	}
+
+	@Override
+	public final List<T> retrieveAll(final boolean readOnly) {
+		LOG.trace("retrieveAll: readOnly: {}", readOnly);
+
+		return gather(scatter(shard -> shard.retrieveAll(readOnly)));
+	}
+
+	@Override
+	public final List<T> retrieveAll(final FetchPlan plan) {
+		LOG.trace("retrieveAll: {}", plan);
+
+		return gather(scatter(shard -> shard.retrieveAll(plan)));
+	}
+
+	@Override
+	public final <DTO> List<DTO> retrieveAll(final ProjectionConverter<? super T, DTO> converter) {
+		return retrieveAll(null, converter);
+	}
+
+	@Override
+	public final <DTO> List<DTO> retrieveAll(final QueryPredicate<T> predicate,
+			final ProjectionConverter<? super T, DTO> converter) {
+		LOG.trace("retrieveAll: {}, {}", predicate, converter);
+
+		return gather(scatter(shard -> shard.retrieveAll(predicate, converter)));
+	}
+
+	@Override
+	public final Stream<T> streamAll() {
+		return streamAll(DAOBase.DEFAULT_FETCH_SIZE);
+	}
+
+	@Override
+	public final Stream<T> streamAll(final int fetchSize) {
+		LOG.trace("streamAll: fetchSize: {}", fetchSize);
+
+		return shards.stream().flatMap(shard -> shard.streamAll(fetchSize));
+	}
+
+	@Override
+	public final T retrieveById(final long id) {
+		return shardFor(id).retrieveById(id);
+	}
+
+	@Override
+	public final T retrieveById(final long id, final boolean readOnly) {
+		return shardFor(id).retrieveById(id, readOnly);
+	}
+
+	@Override
+	public final T retrieveById(final long id, final FetchPlan plan) {
+		return shardFor(id).retrieveById(id, plan);
+	}
+
+	@Override
+	public final List<T> retrieveByIds(final Collection<Long> ids) {
+		return ImmutableList.copyOf(retrieveMapByIds(ids).values());
+	}
+
+	@Override
+	public final List<T> retrieveByIds(final Collection<Long> ids, final FetchPlan plan) {
+		LOG.trace("retrieveByIds: {}, {}", ids, plan);
+
+		checkNotNull(ids, "ids");
+		checkNotNull(plan, "plan");
+
+		final Map<Long, T> found = new HashMap<>();
+		final List<List<T>> results = scatterByShard(ids, (shard, shardIds) -> shard.retrieveByIds(shardIds, plan));
+		for (final List<T> shardResult : results) {
+			for (final T entity : shardResult) {
+				found.put(entity.getId(), entity);
+			}
+		}
+
+		return ImmutableList.copyOf(inRequestOrder(ids, found).values());
+	}
+
+	@Override
+	public final Map<Long, T> retrieveMapByIds(final Collection<Long> ids) {
+		LOG.trace("retrieveMapByIds: {}", ids);
+
+		checkNotNull(ids, "ids");
+
+		final Map<Long, T> found = new HashMap<>();
+		for (final Map<Long, T> shardResult : scatterByShard(ids, DAO::retrieveMapByIds)) {
+			found.putAll(shardResult);
+		}
+
+		return inRequestOrder(ids, found);
+	}
+
+	private static <E> Map<Long, E> inRequestOrder(final Collection<Long> ids, final Map<Long, E> found) {
+		final ImmutableMap.Builder<Long, E> builder = ImmutableMap.builder();
+		for (final Long id : ImmutableSet.copyOf(ids)) {
+			if (found.containsKey(id)) {
+				builder.put(id, found.get(id));
+			}
+		}
+
+		return builder.build();
+	}
+
+	@Override
+	public final Page<T> retrievePage(final int size) {
+		throw new UnsupportedOperationException("Paging over shards is not supported");
+	}
+
+	@Override
+	public final Page<T> retrievePage(final PageKey key, final int size) {
+		throw new UnsupportedOperationException("Paging over shards is not supported");
+	}
+
+	@Override
+	public final void persist(final AbstractEntity entity) {
+		LOG.trace("persist: {}", entity);
+
+		checkNotNull(entity, "entity");
+
+		final T sharded = getEntityClass().cast(entity);
+		final int shard = route(sharded);
+
+		shards.get(shard).persist(sharded);
+
+		checkState(sharded.getShard() == shard, "Shard %s generated an id for shard %s; check its %s property", shard,
+				sharded.getShard(), HibernateProperties.SHARD);
+	}
+
+	@Override
+	public final void persistAll(final AbstractEntity... entities) {
+		persistAll(ImmutableList.copyOf(entities));
+	}
+
+	@Override
+	public final void persistAll(final Collection<? extends AbstractEntity> entities) {
+		LOG.trace("persistAll: {}", entities);
+
+		for (final AbstractEntity entity : entities) {
+			persist(entity);
+		}
+	}
+
+	@Override
+	public final int persistAll(final Collection<? extends AbstractEntity> entities, final int batchSize) {
+		LOG.trace("persistAll: {}, batchSize: {}", entities, batchSize);
+
+		checkNotNull(entities, "entities");
+		checkArgument(batchSize > 0, "batchSize must be positive");
+
+		final Map<Integer, List<T>> byShard = new LinkedHashMap<>();
+		for (final AbstractEntity entity : entities) {
+			final T sharded = getEntityClass().cast(entity);
+			byShard.computeIfAbsent(route(sharded), shard -> new ArrayList<>()).add(sharded);
+		}
+
+		int batches = 0;
+		for (final Map.Entry<Integer, List<T>> entry : byShard.entrySet()) {
+			batches += shards.get(entry.getKey()).persistAll(entry.getValue(), batchSize);
+		}
+
+		return batches;
+	}
+
+	@Override
+	public final void remove(final AbstractEntity entity) {
+		LOG.trace("remove: {}", entity);
+
+		checkNotNull(entity, "entity");
+
+		shardFor(entity.getId()).remove(entity);
+	}
+
+	@Override
+	public final void removeById(final long id) {
+		shardFor(id).removeById(id);
+	}
+
+	@Override
+	public final int removeByIds(final Collection<Long> ids) {
+		LOG.trace("removeByIds: {}", ids);
+
+		checkNotNull(ids, "ids");
+
+		int removed = 0;
+		for (final Integer shardRemoved : scatterByShard(ids, DAO::removeByIds)) {
+			removed += shardRemoved;
+		}
+
+		return removed;
+	}
+
+	@Override
+	public final int removeWhere(final QueryPredicate<T> predicate) {
+		LOG.trace("removeWhere: {}", predicate);
+
+		checkNotNull(predicate, "predicate");
+
+		int removed = 0;
+		for (final Integer shardRemoved : scatter(shard -> shard.removeWhere(predicate))) {
+			removed += shardRemoved;
+		}
+
+		return removed;
+	}
+
+	private int route(final T entity) {
+		if (routingKey == null) {
+			return Math.floorMod(next.getAndIncrement(), shards.size());
+		}
+
+		return Math.floorMod(Objects.hashCode(routingKey.apply(entity)), shards.size());
+	}
+
+	private <R> List<R> scatter(final Function<DAO<T>, R> work) {
+		final List<CompletableFuture<R>> futures = new ArrayList<>(shards.size());
+		for (final DAO<T> shard : shards) {
+			futures.add(CompletableFuture.supplyAsync(() -> work.apply(shard), executor));
+		}
+
+		return join(futures);
+	}
+
+	private <R> List<R> scatterByShard(final Collection<Long> ids, final BiFunction<DAO<T>, List<Long>, R> work) {
+		final Map<DAO<T>, List<Long>> byShard = new LinkedHashMap<>();
+		for (final Long id : ImmutableSet.copyOf(ids)) {
+			byShard.computeIfAbsent(shardFor(id), shard -> new ArrayList<>()).add(id);
+		}
+
+		final List<CompletableFuture<R>> futures = new ArrayList<>(byShard.size());
+		for (final Map.Entry<DAO<T>, List<Long>> entry : byShard.entrySet()) {
+			futures.add(CompletableFuture.supplyAsync(() -> work.apply(entry.getKey(), entry.getValue()), executor));
+		}
+
+		return join(futures);
+	}
+
+	/**
+	 * Waits for all shards before failing, so no shard is still using its entity manager when this returns.
+	 */
+	private static <R> List<R> join(final List<CompletableFuture<R>> futures) {
+		final List<R> results = new ArrayList<>(futures.size());
+		RuntimeException failure = null;
+
+		for (final CompletableFuture<R> future : futures) {
+			try {
+				results.add(future.join());
+			} catch (final CompletionException e) {
+				if (failure == null) {
+					failure = unwrap(e);
+				} else {
+					failure.addSuppressed(unwrap(e));
+				}
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+
+		return results;
+	}
+
+	private static RuntimeException unwrap(final CompletionException e) {
+		if (e.getCause() instanceof RuntimeException) {
+			return (RuntimeException) e.getCause();
+		}
+
+		return e;
+	}
+
+	private static <E> List<E> gather(final List<List<E>> results) {
+		final ImmutableList.Builder<E> builder = ImmutableList.builder();
+		for (final List<E> result : results) {
+			builder.addAll(result);
+		}
+
+		return builder.build();
+	}
+
+}
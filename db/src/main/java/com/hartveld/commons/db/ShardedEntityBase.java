@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Base class for entities that are partitioned over several databases by {@link ShardedDAO}. Ids come from a
+ * per-entity sequence named <code>&lt;EntityName&gt;_SEQ</code> in each shard, allocated in blocks of
+ * {@value SequenceEntityBase#ALLOCATION_SIZE} like {@link SequenceEntityBase}, and carry the number of the shard in
+ * their low bits (see {@link ShardedIdGenerator}).
+ */
+@MappedSuperclass
+public class ShardedEntityBase extends AbstractEntity {
+
+	@Id
+	@GeneratedValue(generator = "sharded-entity-base")
+	@GenericGenerator(name = "sharded-entity-base", strategy = "com.hartveld.commons.db.ShardedIdGenerator",
+			parameters = {
+					@Parameter(name = SequenceStyleGenerator.CONFIG_PREFER_SEQUENCE_PER_ENTITY, value = "true"),
+					@Parameter(name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo"),
+					@Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM,
+							value = "" + SequenceEntityBase.ALLOCATION_SIZE) })
+	private long id;
+
+	@Override
+	public final long getId() {
+		return id;
+	}
+
+	public final int getShard() {
+		return ShardedIdGenerator.shardOf(id);
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import java.io.Serializable;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerationException;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+/**
+ * Takes values from the shard-local sequence of {@link SequenceStyleGenerator} and puts the shard number, configured
+ * with {@link HibernateProperties#shard(int)}, in the low {@value #SHARD_BITS} bits. Ids are therefore unique over
+ * all shards and tell which shard holds the entity.
+ */
+public class ShardedIdGenerator extends SequenceStyleGenerator {
+
+	public static final int SHARD_BITS = 10;
+	public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+	private static final long SHARD_MASK = MAX_SHARDS - 1;
+
+	private volatile Integer shard;
+
+	public static int shardOf(final long id) {
+		return (int) (id & SHARD_MASK);
+	}
+
+	public static long shardedId(final long value, final int shard) {
+		return value << SHARD_BITS | shard;
+	}
+
+	@Override
+	public Serializable generate(final SessionImplementor session, final Object object) {
+		final long value = ((Number) super.generate(session, object)).longValue();
+
+		return shardedId(value, shard(session));
+	}
+
+	private int shard(final SessionImplementor session) {
+		if (shard == null) {
+			final String configured = session.getFactory().getProperties().getProperty(HibernateProperties.SHARD);
+			if (configured == null) {
+				throw new IdentifierGenerationException("Property " + HibernateProperties.SHARD
+						+ " must be set to generate ids from " + getDatabaseStructure().getName());
+			}
+
+			final int value = Integer.parseInt(configured);
+			if (value < 0 || value >= MAX_SHARDS) {
+				throw new IdentifierGenerationException("Shard " + value + " is out of range");
+			}
+			shard = value;
+		}
+
+		return shard;
+	}
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Buffers changes to frequently written entities in memory and writes them in batches, from a background thread,
+ * when {@code batchSize} changes are pending, every {@code flushInterval}, on {@link #flush()} and on
+ * {@link #close()}. Repeated updates of the same id are coalesced into a single load and write.
+ * <p>
+ * Durability: a change is only durable once a flush that includes it has committed. Buffered changes are lost when
+ * the JVM stops without {@link #close()}, and other entity managers do not see them before that. Updates are replayed
+ * on freshly loaded entities, so they must express the change (increment a counter) rather than a snapshot of the
+ * entity. Conflicting updates are retried according to the {@link RetryPolicy}; changes that still fail, updates that
+ * throw, and updates of ids that no longer exist, are logged and dropped, and counted in {@link #getDroppedCount()}.
+ * A failing insert batch drops that batch only; the pending updates are still written.
+ * <p>
+ * Back-pressure: once {@code capacity} ids and new entities are pending, writers block until a flush has taken the
+ * buffer, so at most {@code capacity} changes are buffered next to the batch being written. Updates of an id that is
+ * already pending never block.
+ */
+public class WriteBehindDAO<T extends AbstractEntity> implements AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(WriteBehindDAO.class);
+
+	private final EntityManagerFactory emf;
+	private final DAOFactory<T> daoFactory;
+	private final RetryPolicy policy;
+
+	private final int batchSize;
+	private final int capacity;
+
+	private final String entityName;
+
+	private final ScheduledExecutorService flusher;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+	private final Object flushMonitor = new Object();
+
+	private Map<Long, Consumer<T>> updates = new LinkedHashMap<>();
+	private List<T> inserts = new ArrayList<>();
+	private boolean flushRequested;
+	private boolean closed;
+
+	private final LongAdder dropped = new LongAdder();
+
+	public WriteBehindDAO(final EntityManagerFactory emf, final DAOFactory<T> daoFactory, final int batchSize,
+			final int capacity, final long flushInterval, final TimeUnit unit) {
+		this(emf, daoFactory, batchSize, capacity, flushInterval, unit, RetryPolicy.DEFAULT);
+	}
+
+	public WriteBehindDAO(final EntityManagerFactory emf, final DAOFactory<T> daoFactory, final int batchSize,
+			final int capacity, final long flushInterval, final TimeUnit unit, final RetryPolicy policy) {
+		checkNotNull(emf, "emf");
+		checkNotNull(daoFactory, "daoFactory");
+		checkArgument(batchSize > 0, "batchSize must be positive");
+		checkArgument(capacity >= batchSize, "capacity must not be less than batchSize");
+		checkArgument(flushInterval > 0, "flushInterval must be positive");
+		checkNotNull(unit, "unit");
+		checkNotNull(policy, "policy");
+
+		this.emf = emf;
+		this.daoFactory = daoFactory;
+		this.policy = policy;
+		this.batchSize = batchSize;
+		this.capacity = capacity;
+
+		final EntityManager em = emf.createEntityManager();
+		try {
+			this.entityName = daoFactory.create(em).getEntityName();
+		} finally {
+			em.close();
+		}
+
+		this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setNameFormat("write-behind-" + entityName + "-%d")
+				.setDaemon(true)
+				.build());
+		this.flusher.scheduleWithFixedDelay(this::flushInBackground, flushInterval, flushInterval, unit);
+	}
+
+	/**
+	 * Queues a change to the entity with the given id. The change runs in a later flush, on an entity loaded in that
+	 * flush, after any earlier changes queued for the same id.
+	 */
+	public final void update(final long id, final Consumer<? super T> change) throws InterruptedException {
+		LOG.trace("update: {}, {}", id, change);
+
+		checkNotNull(change, "change");
+
+		final Consumer<T> queued = change::accept;
+
+		lock.lock();
+		try {
+			checkState(!closed, "WriteBehindDAO is closed");
+
+			while (!updates.containsKey(id) && isFull()) {
+				notFull.await();
+				checkState(!closed, "WriteBehindDAO is closed");
+			}
+
+			updates.merge(id, queued, Consumer::andThen);
+			requestFlushIfNeeded();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Queues a new entity for insertion in a later flush.
+	 */
+	public final void persist(final T entity) throws InterruptedException {
+		LOG.trace("persist: {}", entity);
+
+		checkNotNull(entity, "entity");
+		checkArgument(entity.getId() == 0, "entity must be new");
+
+		lock.lock();
+		try {
+			checkState(!closed, "WriteBehindDAO is closed");
+
+			while (isFull()) {
+				notFull.await();
+				checkState(!closed, "WriteBehindDAO is closed");
+			}
+
+			inserts.add(entity);
+			requestFlushIfNeeded();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public final int getPendingCount() {
+		lock.lock();
+		try {
+			return pendingCount();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public final long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Writes everything that is pending, on the calling thread.
+	 */
+	public final void flush() {
+		LOG.trace("flush:");
+
+		synchronized (flushMonitor) {
+			final Map<Long, Consumer<T>> pendingUpdates;
+			final List<T> pendingInserts;
+
+			lock.lock();
+			try {
+				pendingUpdates = updates;
+				pendingInserts = inserts;
+				updates = new LinkedHashMap<>();
+				inserts = new ArrayList<>();
+				flushRequested = false;
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+
+			// Each phase drops and counts what it fails to write, so the updates are written even if the inserts fail.
+			if (!pendingInserts.isEmpty()) {
+				writeInserts(pendingInserts);
+			}
+			if (!pendingUpdates.isEmpty()) {
+				writeUpdates(pendingUpdates);
+			}
+		}
+	}
+
+	/**
+	 * Stops the background flushes and writes what is pending. Writers that are blocked on a full buffer fail.
+	 */
+	@Override
+	public void close() {
+		LOG.trace("close:");
+
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		flusher.shutdown();
+		flush();
+	}
+
+	private boolean isFull() {
+		return pendingCount() >= capacity;
+	}
+
+	private int pendingCount() {
+		return updates.size() + inserts.size();
+	}
+
+	private void requestFlushIfNeeded() {
+		if (!flushRequested && pendingCount() >= batchSize) {
+			flushRequested = true;
+			flusher.execute(this::flushInBackground);
+		}
+	}
+
+	private void flushInBackground() {
+		try {
+			flush();
+		} catch (final RuntimeException e) {
+			LOG.error("Write-behind flush of {} failed: {}", entityName, e.getMessage(), e);
+		}
+	}
+
+	private void writeInserts(final List<T> entities) {
+		LOG.debug("Writing {} new {} entities", entities.size(), entityName);
+
+		try {
+			final EntityManager em = emf.createEntityManager();
+			try {
+				final EntityTransaction tx = em.getTransaction();
+				tx.begin();
+				try {
+					daoFactory.create(em).persistAll(entities, batchSize);
+					tx.commit();
+				} finally {
+					if (tx.isActive()) {
+						tx.rollback();
+					}
+				}
+			} finally {
+				em.close();
+			}
+		} catch (final RuntimeException e) {
+			LOG.error("Dropping {} new {} entities: {}", entities.size(), entityName, e.getMessage(), e);
+			dropped.add(entities.size());
+		}
+	}
+
+	private void writeUpdates(final Map<Long, Consumer<T>> changes) {
+		LOG.debug("Writing updates of {} {} entities", changes.size(), entityName);
+
+		try {
+			final EntityManager em = emf.createEntityManager();
+			try {
+				final int failed = new OptimisticRetryExecutor(em, policy).execute(() -> apply(em, changes));
+				if (failed > 0) {
+					dropped.add(failed);
+				}
+			} finally {
+				em.close();
+			}
+		} catch (final RuntimeException e) {
+			LOG.error("Dropping updates of {} {} entities: {}", changes.size(), entityName, e.getMessage(), e);
+			dropped.add(changes.size());
+		}
+	}
+
+	/**
+	 * Applies the changes and returns the number of ids whose changes were dropped: those that no longer exist and
+	 * those whose change failed. A failed change is undone by refreshing its entity, so the others still commit.
+	 */
+	private int apply(final EntityManager em, final Map<Long, Consumer<T>> changes) {
+		final Map<Long, T> entities = daoFactory.create(em).retrieveMapByIds(changes.keySet());
+
+		final int missing = changes.size() - entities.size();
+		if (missing > 0) {
+			LOG.warn("Dropping updates of {} {} entities that no longer exist", missing, entityName);
+		}
+
+		int failed = 0;
+		for (final Map.Entry<Long, T> entry : entities.entrySet()) {
+			try {
+				changes.get(entry.getKey()).accept(entry.getValue());
+			} catch (final RuntimeException e) {
+				LOG.error("Dropping update of {} {}: {}", entityName, entry.getKey(), e.getMessage(), e);
+				em.refresh(entry.getValue());
+				failed++;
+			}
+		}
+
+		return missing + failed;
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.persistence.EntityManagerFactory;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hartveld.commons.db.AbstractEntity;
+
+public final class EntityCaches {
+
+	private static final Logger LOG = LoggerFactory.getLogger(EntityCaches.class);
+
+	private EntityCaches() {}
+
+	public static void configure(final Class<? extends AbstractEntity> entityClass, final int maxEntries,
+			final long timeToLiveSeconds) {
+		LOG.trace("configure: {}, maxEntries: {}, timeToLiveSeconds: {}", entityClass, maxEntries, timeToLiveSeconds);
+
+		checkNotNull(entityClass, "entityClass");
+		checkArgument(maxEntries > 0, "maxEntries must be positive");
+		checkArgument(timeToLiveSeconds > 0, "timeToLiveSeconds must be positive");
+
+		final String region = entityClass.getName();
+		final CacheManager manager = CacheManager.create();
+
+		if (manager.cacheExists(region)) {
+			final Cache cache = manager.getCache(region);
+			final CacheConfiguration config = cache.getCacheConfiguration();
+			config.setMaxElementsInMemory(maxEntries);
+			config.setTimeToLiveSeconds(timeToLiveSeconds);
+			cache.setStatisticsEnabled(true);
+		} else {
+			manager.addCache(new Cache(new CacheConfiguration(region, maxEntries)
+					.timeToLiveSeconds(timeToLiveSeconds)
+					.statistics(true)));
+		}
+	}
+
+	public static CacheStatistics statistics(final EntityManagerFactory emf,
+			final Class<? extends AbstractEntity> entityClass) {
+		LOG.trace("statistics: {}", entityClass);
+
+		checkNotNull(emf, "emf");
+		checkNotNull(entityClass, "entityClass");
+
+		final String region = entityClass.getName();
+		final SecondLevelCacheStatistics stats = emf.unwrap(SessionFactory.class).getStatistics()
+				.getSecondLevelCacheStatistics(region);
+
+		if (stats == null) {
+			return new CacheStatistics(0, 0, 0, 0, 0);
+		}
+
+		return new CacheStatistics(stats.getHitCount(), stats.getMissCount(), stats.getPutCount(),
+				evictionCount(region), stats.getElementCountInMemory());
+	}
+
+	private static long evictionCount(final String region) {
+		final CacheManager manager = CacheManager.getInstance();
+		if (!manager.cacheExists(region)) {
+			return 0;
+		}
+
+		final Cache cache = manager.getCache(region);
+		if (!cache.isStatisticsEnabled()) {
+			return 0;
+		}
+
+		return cache.getStatistics().getEvictionCount();
+	}
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.event.spi.EventSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Caches query results by entity class, query text and parameters, with least-recently-used eviction. Entity
+ * results are cached as ids and resolved again through the DAO, so every entity manager gets its own managed
+ * instances. Once installed, DAOs invalidate all results of their entity class when they persist, remove or flush.
+ * <p>
+ * Invalidation happens when the DAO is called and again when its transaction completes, so results that concurrent
+ * readers loaded before the commit are dropped as well. Every invalidation moves the entity class to a new generation,
+ * which is part of the key of every result that depends on it. Invalidating therefore does not scan the cache: results
+ * of earlier generations are no longer found and age out. Invalidation only covers the entity classes a result was
+ * cached for, so cache queries that read those classes and are written through their DAOs. Entries expire after
+ * {@value #DEFAULT_EXPIRY_MINUTES} minutes by default, which bounds the staleness of writes that bypass the DAOs.
+ */
+public final class QueryResultCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(QueryResultCache.class);
+
+	public static final long DEFAULT_EXPIRY_MINUTES = 10;
+
+	private static volatile QueryResultCache installed;
+
+	private final Cache<Key, List<?>> cache;
+	private final ConcurrentMap<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+	private final ConcurrentMap<EventSource, Set<Class<?>>> pendingInvalidations = new MapMaker().weakKeys().makeMap();
+
+	private QueryResultCache(final Cache<Key, List<?>> cache) {
+		this.cache = cache;
+	}
+
+	public static QueryResultCache withMaximumSize(final long maxEntries) {
+		return withMaximumSize(maxEntries, DEFAULT_EXPIRY_MINUTES, TimeUnit.MINUTES);
+	}
+
+	public static QueryResultCache withMaximumSize(final long maxEntries, final long expireAfterWrite,
+			final TimeUnit unit) {
+		checkArgument(maxEntries > 0, "maxEntries must be positive");
+		checkArgument(expireAfterWrite > 0, "expireAfterWrite must be positive");
+		checkNotNull(unit, "unit");
+
+		return new QueryResultCache(CacheBuilder.newBuilder()
+				.maximumSize(maxEntries)
+				.expireAfterWrite(expireAfterWrite, unit)
+				.recordStats()
+				.<Key, List<?>> build());
+	}
+
+	public static QueryResultCache withMaximumWeight(final long maxRows) {
+		return withMaximumWeight(maxRows, DEFAULT_EXPIRY_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Bounds the cache by the total number of cached rows, counting every entry as at least one row.
+	 */
+	public static QueryResultCache withMaximumWeight(final long maxRows, final long expireAfterWrite,
+			final TimeUnit unit) {
+		checkArgument(maxRows > 0, "maxRows must be positive");
+		checkArgument(expireAfterWrite > 0, "expireAfterWrite must be positive");
+		checkNotNull(unit, "unit");
+
+		return new QueryResultCache(CacheBuilder.newBuilder()
+				.maximumWeight(maxRows)
+				.<Key, List<?>> weigher((key, rows) -> rows.size() + 1)
+				.expireAfterWrite(expireAfterWrite, unit)
+				.recordStats()
+				.<Key, List<?>> build());
+	}
+
+	public static void install(final QueryResultCache cache) {
+		LOG.trace("install: {}", cache);
+
+		checkNotNull(cache, "cache");
+
+		installed = cache;
+	}
+
+	public static void uninstall() {
+		LOG.trace("uninstall:");
+
+		installed = null;
+	}
+
+	/**
+	 * Returns the installed cache, or {@code null} when query results are not cached.
+	 */
+	public static QueryResultCache installed() {
+		return installed;
+	}
+
+	public <V> List<V> get(final Class<?> entityClass, final String query, final Map<String, ?> parameters,
+			final Class<V> valueClass, final Callable<List<V>> loader) {
+		checkNotNull(entityClass, "entityClass");
+
+		return get(ImmutableSet.<Class<?>> of(entityClass), query, parameters, valueClass, loader);
+	}
+
+	/**
+	 * Returns the cached rows for the query, or loads and caches them until one of the entity classes is invalidated.
+	 * Parameter values must implement {@code equals} and {@code hashCode}, and the loaded list must not be modified
+	 * afterwards.
+	 */
+	public <V> List<V> get(final Set<? extends Class<?>> entityClasses, final String query,
+			final Map<String, ?> parameters, final Class<V> valueClass, final Callable<List<V>> loader) {
+		checkNotNull(entityClasses, "entityClasses");
+		checkArgument(!entityClasses.isEmpty(), "entityClasses must be non-empty");
+		checkNotNull(query, "query");
+		checkNotNull(parameters, "parameters");
+		checkNotNull(valueClass, "valueClass");
+		checkNotNull(loader, "loader");
+
+		final Map<Class<?>, Long> loadGenerations = generations(entityClasses);
+		final Key key = new Key(query, ImmutableMap.copyOf(parameters), valueClass, loadGenerations);
+
+		try {
+			@SuppressWarnings("unchecked")
+			final List<V> rows = (List<V>) cache.get(key, loader);
+
+			// Rows loaded across an invalidation can no longer be found; drop them now instead of letting them age out.
+			if (!generations(entityClasses).equals(loadGenerations)) {
+				cache.asMap().remove(key, rows);
+			}
+			return rows;
+		} catch (final ExecutionException | UncheckedExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Loading query results failed", e.getCause());
+		}
+	}
+
+	public void invalidate(final Class<?> entityClass) {
+		checkNotNull(entityClass, "entityClass");
+
+		LOG.debug("Invalidating cached query results of {}", entityClass.getSimpleName());
+
+		generation(entityClass).incrementAndGet();
+	}
+
+	/**
+	 * Invalidates the results of the entity class now and, when a transaction is in progress, once more when it
+	 * completes.
+	 */
+	public void invalidate(final Class<?> entityClass, final EntityManager em) {
+		checkNotNull(em, "em");
+
+		invalidate(entityClass);
+
+		final EventSource session = em.unwrap(EventSource.class);
+		if (!session.isTransactionInProgress()) {
+			return;
+		}
+
+		final Set<Class<?>> pending = pendingInvalidations.computeIfAbsent(session,
+				s -> ConcurrentHashMap.newKeySet());
+		if (pending.add(entityClass)) {
+			session.getActionQueue().registerProcess((success, completed) -> {
+				pending.remove(entityClass);
+				invalidate(entityClass);
+			});
+		}
+	}
+
+	public void invalidateAll() {
+		for (final AtomicLong generation : generations.values()) {
+			generation.incrementAndGet();
+		}
+		cache.invalidateAll();
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	private AtomicLong generation(final Class<?> entityClass) {
+		return generations.computeIfAbsent(entityClass, c -> new AtomicLong());
+	}
+
+	private Map<Class<?>, Long> generations(final Set<? extends Class<?>> entityClasses) {
+		final ImmutableMap.Builder<Class<?>, Long> builder = ImmutableMap.builder();
+		for (final Class<?> entityClass : entityClasses) {
+			builder.put(entityClass, generation(entityClass).get());
+		}
+
+		return builder.build();
+	}
+
+	public CacheStatistics statistics() {
+		final CacheStats stats = cache.stats();
+
+		return new CacheStatistics(stats.hitCount(), stats.missCount(), stats.loadSuccessCount(),
+				stats.evictionCount(), cache.size());
+	}
+
+	private static final class Key {
+
+		private final String query;
+		private final Map<String, ?> parameters;
+		private final Class<?> valueClass;
+		private final Map<Class<?>, Long> generations;
+
+		private final int hashCode;
+
+		Key(final String query, final Map<String, ?> parameters, final Class<?> valueClass,
+				final Map<Class<?>, Long> generations) {
+			this.query = query;
+			this.parameters = parameters;
+			this.valueClass = valueClass;
+			this.generations = generations;
+			this.hashCode = Objects.hash(query, parameters, valueClass, generations);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			final Key other = (Key) obj;
+			return valueClass == other.valueClass && query.equals(other.query) && parameters.equals(other.parameters)
+					&& generations.equals(other.generations);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Latency histogram with power-of-two nanosecond buckets, so percentiles are accurate to within a factor of two.
+ */
+public final class Histogram {
+
+	private static final int BUCKETS = Long.SIZE;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAdder rows = new LongAdder();
+
+	Histogram() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	void record(final long elapsedNanos, final int rowCount) {
+		final long nanos = Math.max(0, elapsedNanos);
+
+		buckets[Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(nanos))].increment();
+		count.increment();
+		totalNanos.add(nanos);
+		rows.add(rowCount);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	public long getRows() {
+		return rows.sum();
+	}
+
+	public long getMeanNanos() {
+		final long n = getCount();
+		if (n == 0) {
+			return 0;
+		}
+
+		return getTotalNanos() / n;
+	}
+
+	/**
+	 * Returns the upper bound of the bucket that holds the given percentile (0-100), or 0 when nothing was recorded.
+	 */
+	public long getPercentileNanos(final double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile must be between 0 and 100");
+		}
+
+		final long[] counts = new long[BUCKETS];
+		long n = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+			n += counts[i];
+		}
+
+		final long rank = (long) Math.ceil(percentile / 100 * n);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank && seen > 0) {
+				return upperBound(i);
+			}
+		}
+
+		return 0;
+	}
+
+	private static long upperBound(final int bucket) {
+		if (bucket >= BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+
+		return (1L << bucket) - 1;
+	}
+
+	@Override
+	public String toString() {
+		final ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE);
+
+		builder.append("count", getCount());
+		builder.append("meanNanos", getMeanNanos());
+		builder.append("p99Nanos", getPercentileNanos(99));
+		builder.append("rows", getRows());
+
+		return builder.toString();
+	}
+
+}
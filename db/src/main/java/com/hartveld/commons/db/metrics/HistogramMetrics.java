@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.metrics;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a {@link Histogram} per entity class and operation.
+ */
+public class HistogramMetrics implements DAOMetrics {
+
+	private final ConcurrentMap<Class<?>, Map<DAOOperation, Histogram>> histograms = new ConcurrentHashMap<>();
+
+	@Override
+	public final void record(final Class<?> entityClass, final DAOOperation operation, final long elapsedNanos,
+			final int rows) {
+		histograms(entityClass).get(operation).record(elapsedNanos, rows);
+	}
+
+	public final Histogram histogram(final Class<?> entityClass, final DAOOperation operation) {
+		checkNotNull(operation, "operation");
+
+		return histograms(entityClass).get(operation);
+	}
+
+	public final Map<DAOOperation, Histogram> histograms(final Class<?> entityClass) {
+		checkNotNull(entityClass, "entityClass");
+
+		return histograms.computeIfAbsent(entityClass, c -> {
+			final Map<DAOOperation, Histogram> map = new EnumMap<>(DAOOperation.class);
+			for (final DAOOperation operation : DAOOperation.values()) {
+				map.put(operation, new Histogram());
+			}
+			return Collections.unmodifiableMap(map);
+		});
+	}
+
+	public final void reset() {
+		histograms.clear();
+	}
+
+}
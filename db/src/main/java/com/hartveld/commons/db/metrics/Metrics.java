@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Entry point for DAO metrics. Nothing is timed until a {@link DAOMetrics} backend is installed or a slow-query
+ * threshold is set, so the disabled path is two volatile reads per operation. Queries that take at least the threshold
+ * are logged at WARN to the {@value #SLOW_QUERY_LOGGER} logger, with their text and row count.
+ */
+public final class Metrics {
+
+	public static final String SLOW_QUERY_LOGGER = "com.hartveld.commons.db.SlowQueries";
+
+	private static final Logger LOG = LoggerFactory.getLogger(Metrics.class);
+	private static final Logger SLOW_QUERY_LOG = LoggerFactory.getLogger(SLOW_QUERY_LOGGER);
+
+	private static final long NOT_STARTED = Long.MIN_VALUE;
+	private static final long DISABLED = -1;
+
+	private static volatile DAOMetrics metrics;
+	private static volatile long slowQueryThresholdNanos = DISABLED;
+
+	private Metrics() {}
+
+	public static void install(final DAOMetrics backend) {
+		LOG.trace("install: {}", backend);
+
+		checkNotNull(backend, "backend");
+
+		metrics = backend;
+	}
+
+	public static void uninstall() {
+		LOG.trace("uninstall:");
+
+		metrics = null;
+	}
+
+	public static void setSlowQueryThreshold(final long threshold, final TimeUnit unit) {
+		LOG.trace("setSlowQueryThreshold: {} {}", threshold, unit);
+
+		checkArgument(threshold >= 0, "threshold must not be negative");
+		checkNotNull(unit, "unit");
+
+		slowQueryThresholdNanos = unit.toNanos(threshold);
+	}
+
+	public static void disableSlowQueryLog() {
+		LOG.trace("disableSlowQueryLog:");
+
+		slowQueryThresholdNanos = DISABLED;
+	}
+
+	public static boolean isEnabled() {
+		return metrics != null || slowQueryThresholdNanos != DISABLED;
+	}
+
+	/**
+	 * Returns the start time to pass to {@code record}, or a marker that makes {@code record} a no-op when metrics are
+	 * disabled.
+	 */
+	public static long start() {
+		if (!isEnabled()) {
+			return NOT_STARTED;
+		}
+
+		return System.nanoTime();
+	}
+
+	public static void record(final Class<?> entityClass, final DAOOperation operation, final long start,
+			final int rows) {
+		record(entityClass, operation, null, start, rows);
+	}
+
+	public static void record(final Class<?> entityClass, final DAOOperation operation, final Query query,
+			final long start, final int rows) {
+		if (start == NOT_STARTED) {
+			return;
+		}
+
+		final long elapsedNanos = System.nanoTime() - start;
+
+		final DAOMetrics backend = metrics;
+		if (backend != null) {
+			backend.record(entityClass, operation, elapsedNanos, rows);
+		}
+
+		final long threshold = slowQueryThresholdNanos;
+		if (threshold != DISABLED && elapsedNanos >= threshold) {
+			SLOW_QUERY_LOG.warn("Slow {} on {}: {} ms, {} rows: {}", operation, entityClass.getSimpleName(),
+					TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rows, queryString(query));
+		}
+	}
+
+	/**
+	 * Wraps the query so its execution is recorded, or returns it as is when metrics are disabled.
+	 */
+	public static <R> TypedQuery<R> timed(final TypedQuery<R> query, final Class<?> entityClass,
+			final DAOOperation operation) {
+		if (!isEnabled()) {
+			return query;
+		}
+
+		@SuppressWarnings("unchecked")
+		final TypedQuery<R> proxy = (TypedQuery<R>) proxy(query, TypedQuery.class, entityClass, operation);
+		return proxy;
+	}
+
+	public static Query timed(final Query query, final Class<?> entityClass, final DAOOperation operation) {
+		if (!isEnabled()) {
+			return query;
+		}
+
+		return (Query) proxy(query, Query.class, entityClass, operation);
+	}
+
+	private static Object proxy(final Query query, final Class<?> type, final Class<?> entityClass,
+			final DAOOperation operation) {
+		checkNotNull(query, "query");
+		checkNotNull(entityClass, "entityClass");
+		checkNotNull(operation, "operation");
+
+		// Implement the interfaces of the query too, so casts to provider types work as they do with metrics off.
+		final Set<Class<?>> interfaces = new LinkedHashSet<>();
+		interfaces.add(type);
+		for (final Class<?> implemented : ClassUtils.getAllInterfaces(query.getClass())) {
+			if (Modifier.isPublic(implemented.getModifiers())) {
+				interfaces.add(implemented);
+			}
+		}
+
+		final TimedQueryHandler handler = new TimedQueryHandler(query, entityClass, operation);
+		final Object proxy = Proxy.newProxyInstance(query.getClass().getClassLoader(),
+				interfaces.toArray(new Class<?>[interfaces.size()]), handler);
+		handler.setProxy(proxy);
+
+		return proxy;
+	}
+
+	private static String queryString(final Query query) {
+		if (query == null) {
+			return "-";
+		}
+
+		try {
+			return query.unwrap(org.hibernate.Query.class).getQueryString();
+		} catch (final PersistenceException e) {
+			return query.toString();
+		}
+	}
+
+}
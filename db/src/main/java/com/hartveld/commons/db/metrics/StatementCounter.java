@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.metrics;
+
+import org.hibernate.EmptyInterceptor;
+
+/**
+ * Counts the SQL statements that Hibernate prepares, per thread, so tests can assert how many statements a call
+ * issues and catch N+1 regressions. Installed on a persistence unit with
+ * {@link com.hartveld.commons.db.HibernateProperties#statementCounting()}.
+ */
+public class StatementCounter extends EmptyInterceptor {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+	@Override
+	public String onPrepareStatement(final String sql) {
+		COUNT.get()[0]++;
+
+		return super.onPrepareStatement(sql);
+	}
+
+	/**
+	 * Returns the number of statements prepared on this thread since the last {@link #reset()}.
+	 */
+	public static long get() {
+		return COUNT.get()[0];
+	}
+
+	public static void reset() {
+		COUNT.get()[0] = 0;
+	}
+
+	/**
+	 * Returns the number of statements that the work prepared on this thread.
+	 */
+	public static long count(final Runnable work) {
+		final long before = get();
+		work.run();
+
+		return get() - before;
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import javax.persistence.Query;
+
+/**
+ * Times the execution methods of a query and keeps parameter-setting methods chained through the proxy. Unwrapping to
+ * a type the proxy does not implement returns the query itself.
+ */
+final class TimedQueryHandler implements InvocationHandler {
+
+	private final Query query;
+	private final Class<?> entityClass;
+	private final DAOOperation operation;
+
+	private Object proxy;
+
+	TimedQueryHandler(final Query query, final Class<?> entityClass, final DAOOperation operation) {
+		this.query = query;
+		this.entityClass = entityClass;
+		this.operation = operation;
+	}
+
+	void setProxy(final Object proxy) {
+		this.proxy = proxy;
+	}
+
+	@Override
+	public Object invoke(final Object self, final Method method, final Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "getResultList":
+			final long listStart = Metrics.start();
+			final List<?> list = (List<?>) call(method, args);
+			Metrics.record(entityClass, operation, query, listStart, list.size());
+			return list;
+		case "getSingleResult":
+			final long singleStart = Metrics.start();
+			final Object single = call(method, args);
+			Metrics.record(entityClass, operation, query, singleStart, 1);
+			return single;
+		case "executeUpdate":
+			final long updateStart = Metrics.start();
+			final Integer updated = (Integer) call(method, args);
+			Metrics.record(entityClass, operation, query, updateStart, updated);
+			return updated;
+		case "unwrap":
+			final Object unwrapped = call(method, args);
+			if (unwrapped == query && ((Class<?>) args[0]).isInstance(proxy)) {
+				return proxy;
+			}
+			return unwrapped;
+		default:
+			final Object result = call(method, args);
+			if (result == query) {
+				return proxy;
+			}
+			return result;
+		}
+	}
+
+	private Object call(final Method method, final Object[] args) throws Throwable {
+		try {
+			return method.invoke(query, args);
+		} catch (final InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+}
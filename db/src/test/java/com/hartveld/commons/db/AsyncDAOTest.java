@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class AsyncDAOTest {
+
+	private static final String UNIT = "H2-Test";
+
+	private final List<Boolean> defaultReadOnly = new CopyOnWriteArrayList<>();
+
+	private EntityManagerFactory emf;
+	private AsyncDAO<TestEntity> dao;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:async-dao;DB_CLOSE_DELAY=-1"));
+		dao = new AsyncDAO<>(emf, em -> {
+			defaultReadOnly.add(em.unwrap(Session.class).isDefaultReadOnly());
+			return new TestEntityDAO(em);
+		}, 2);
+	}
+
+	@After
+	public void tearDown() {
+		dao.close();
+		emf.close();
+	}
+
+	@Test
+	public void testRetrieveByIdsLoadsReadOnly() {
+		final TestEntity first = dao.persist(new TestEntity("first")).join();
+		final TestEntity second = dao.persist(new TestEntity("second")).join();
+		defaultReadOnly.clear();
+
+		final List<Long> ids = ImmutableList.of(second.getId(), first.getId());
+		final List<TestEntity> entities = dao.retrieveByIds(ids).join();
+		final Map<Long, TestEntity> map = dao.retrieveMapByIds(ids).join();
+
+		assertThat(entities.get(0).getName(), is("second"));
+		assertThat(map.get(first.getId()).getName(), is("first"));
+		assertThat(defaultReadOnly, contains(true, true));
+	}
+
+	@Test
+	public void testRetrievesAreReadOnlyAndWritesAreNot() {
+		final TestEntity entity = dao.persist(new TestEntity("entity")).join();
+
+		dao.retrieveById(entity.getId()).join();
+		dao.retrieveAll().join();
+		assertThat(defaultReadOnly.subList(1, 3), everyItem(is(true)));
+
+		dao.removeById(entity.getId()).join();
+		assertThat(defaultReadOnly.get(0), is(false));
+		assertThat(defaultReadOnly.get(3), is(false));
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class BulkLoaderTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final int SHARD = 1;
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT, ImmutableMap.<String, String> builder()
+				.put("hibernate.connection.url", "jdbc:h2:mem:bulk-load;DB_CLOSE_DELAY=-1")
+				.putAll(HibernateProperties.shard(SHARD))
+				.build());
+		em = emf.createEntityManager();
+		em.getTransaction().begin();
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testLoadsEntitiesWithDatabaseIds() {
+		final List<TestEntity> entities = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			entities.add(new TestEntity("entity-" + i));
+		}
+
+		final long loaded = new BulkLoader<>(em, TestEntity.class, 2).load(entities.iterator());
+
+		final List<String> names = new ArrayList<>();
+		for (final TestEntity entity : new TestEntityDAO(em).retrieveAll()) {
+			names.add(entity.getName());
+		}
+
+		assertThat(loaded, is(5L));
+		assertThat(names, containsInAnyOrder("entity-0", "entity-1", "entity-2", "entity-3", "entity-4"));
+	}
+
+	@Test
+	public void testLoadsAssociations() {
+		final TestParent parent = new TestParent("parent");
+		em.persist(parent);
+
+		new BulkLoader<>(em, TestChild.class).load(ImmutableList.of(
+				new TestChild("child-0", parent),
+				new TestChild("child-1", parent),
+				new TestChild("child-2", parent)));
+		em.clear();
+
+		assertThat(new TestParentDAO(em).retrieveById(parent.getId()).getChildren().size(), is(3));
+	}
+
+	@Test
+	public void testSetsGeneratedIds() {
+		final TestShardedEntity first = new TestShardedEntity("first");
+		final TestShardedEntity second = new TestShardedEntity("second");
+
+		new BulkLoader<>(em, TestShardedEntity.class).load(ImmutableList.of(first, second));
+		em.clear();
+
+		final TestShardedEntityDAO dao = new TestShardedEntityDAO(em);
+
+		assertThat(ShardedIdGenerator.shardOf(first.getId()), is(SHARD));
+		assertThat(dao.retrieveById(first.getId()).getName(), is("first"));
+		assertThat(dao.retrieveById(second.getId()).getName(), is("second"));
+	}
+
+}
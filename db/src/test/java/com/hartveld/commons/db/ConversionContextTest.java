@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class ConversionContextTest {
+
+	private final NameConverter converter = new NameConverter();
+
+	@Test
+	public void testStreamSharesDTOsInOpenContext() {
+		final TestEntity entity = new TestEntity("entity");
+
+		final ConversionContext context = ConversionContext.open();
+		final List<NameDTO> dtos;
+		try {
+			dtos = converter.toDTOs(Stream.of(entity, entity)).collect(Collectors.toList());
+		} finally {
+			context.close();
+		}
+
+		assertThat(dtos.get(0), is(sameInstance(dtos.get(1))));
+	}
+
+	@Test
+	public void testIteratorSharesDTOsInOpenContext() {
+		final TestEntity entity = new TestEntity("entity");
+
+		final ConversionContext context = ConversionContext.open();
+		try {
+			final Iterator<NameDTO> dtos = converter.toDTOs(ImmutableList.of(entity, entity).iterator());
+
+			assertThat(dtos.next(), is(sameInstance(dtos.next())));
+		} finally {
+			context.close();
+		}
+	}
+
+	@Test
+	public void testConverterOverridingToDTOSharesDTOsInList() {
+		final TestEntity entity = new TestEntity("entity");
+
+		final List<NameDTO> dtos = new LegacyNameConverter().toDTOs(ImmutableList.of(entity, entity));
+
+		assertThat(dtos.get(0), is(sameInstance(dtos.get(1))));
+		assertThat(dtos.get(0).name, is("entity"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testConverterWithoutConversionIsRejected() {
+		new AbstractConverter<TestEntity, NameDTO>() {}.toDTO(new TestEntity("entity"));
+	}
+
+	@Test
+	public void testNestedConversionsShareDTOs() {
+		final TestParent parent = new TestParent("parent");
+		final List<TestChild> children = ImmutableList.of(new TestChild("first", parent),
+				new TestChild("second", parent));
+
+		final List<ChildDTO> dtos = new ChildConverter(converter).toDTOs(children, true);
+
+		assertThat(dtos.get(0), is(not(sameInstance(dtos.get(1)))));
+		assertThat(dtos.get(0).parent, is(sameInstance(dtos.get(1).parent)));
+	}
+
+	@Test
+	public void testEntitiesOfDifferentClassesAreNotShared() {
+		final EntityManagerFactory emf = Persistence.createEntityManagerFactory("H2-Test",
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:conversion-context;DB_CLOSE_DELAY=-1"));
+		final EntityManager em = emf.createEntityManager();
+
+		try {
+			em.getTransaction().begin();
+			final TestEntity entity = new TestEntity("entity");
+			final TestParent parent = new TestParent("parent");
+			em.persist(entity);
+			em.persist(parent);
+			assertThat(entity.getId(), is(parent.getId()));
+
+			final List<NameDTO> dtos = converter.toDTOs(ImmutableList.<AbstractEntity> of(entity, parent));
+
+			assertThat(dtos.get(0), is(not(sameInstance(dtos.get(1)))));
+			assertThat(dtos.get(1).name, is("parent"));
+		} finally {
+			em.getTransaction().rollback();
+			em.close();
+			emf.close();
+		}
+	}
+
+	private static final class NameDTO {
+
+		private final String name;
+
+		NameDTO(final String name) {
+			this.name = name;
+		}
+
+	}
+
+	private static final class ChildDTO {
+
+		private final NameDTO parent;
+
+		ChildDTO(final NameDTO parent) {
+			this.parent = parent;
+		}
+
+	}
+
+	private static final class NameConverter extends AbstractConverter<AbstractEntity, NameDTO> {
+
+		@Override
+		protected NameDTO createDTO(final AbstractEntity model, final boolean incrementVersion) {
+			if (model instanceof TestParent) {
+				return new NameDTO(((TestParent) model).getName());
+			}
+
+			return new NameDTO(((TestEntity) model).getName());
+		}
+
+	}
+
+	private static final class LegacyNameConverter extends AbstractConverter<TestEntity, NameDTO> {
+
+		@Override
+		public NameDTO toDTO(final TestEntity model, final boolean incrementVersion) {
+			return new NameDTO(model.getName());
+		}
+
+	}
+
+	private static final class ChildConverter extends AbstractConverter<TestChild, ChildDTO> {
+
+		private final NameConverter names;
+
+		ChildConverter(final NameConverter names) {
+			this.names = names;
+		}
+
+		@Override
+		protected ChildDTO createDTO(final TestChild model, final boolean incrementVersion) {
+			return new ChildDTO(names.toDTO(model.getParent(), incrementVersion));
+		}
+
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+public class ConverterTest {
+
+	private final CountingConverter converter = new CountingConverter();
+
+	@Test
+	public void testStreamConvertsLazily() {
+		final Stream<String> names = converter.toDTOs(Stream.of(new TestEntity("first"), new TestEntity("second")));
+
+		assertThat(converter.converted.get(), is(0));
+		assertThat(names.collect(Collectors.toList()), contains("first", "second"));
+		assertThat(converter.converted.get(), is(2));
+	}
+
+	@Test
+	public void testIteratorConvertsLazily() {
+		final Iterator<String> names = converter.toDTOs(ImmutableList.of(new TestEntity("first")).iterator(), true);
+
+		assertThat(converter.converted.get(), is(0));
+		assertThat(Lists.newArrayList(names), contains("first+"));
+	}
+
+	@Test
+	public void testIterableConvertsOnEveryIteration() {
+		final Iterable<String> names = converter.toDTOs((Iterable<TestEntity>) ImmutableList.of(
+				new TestEntity("first")));
+
+		assertThat(Iterables.getOnlyElement(names), is("first"));
+		assertThat(Iterables.getOnlyElement(names), is("first"));
+		assertThat(converter.converted.get(), is(2));
+	}
+
+	/**
+	 * Implements only the abstract methods, as converters outside this package may.
+	 */
+	private static final class CountingConverter implements Converter<TestEntity, String> {
+
+		private final AtomicInteger converted = new AtomicInteger();
+
+		@Override
+		public String toDTO(final TestEntity model) {
+			return toDTO(model, false);
+		}
+
+		@Override
+		public String toDTO(final TestEntity model, final boolean incrementVersion) {
+			converted.incrementAndGet();
+			if (incrementVersion) {
+				return model.getName() + "+";
+			}
+			return model.getName();
+		}
+
+		@Override
+		public List<String> toDTOs(final Collection<? extends TestEntity> list) {
+			return toDTOs(list, false);
+		}
+
+		@Override
+		public List<String> toDTOs(final Collection<? extends TestEntity> list, final boolean incrementVersion) {
+			final List<String> dtos = new ArrayList<>();
+			for (final TestEntity model : list) {
+				dtos.add(toDTO(model, incrementVersion));
+			}
+			return dtos;
+		}
+
+	}
+
+}
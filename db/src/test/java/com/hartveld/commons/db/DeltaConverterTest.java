@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class DeltaConverterTest {
+
+	private final DeltaConverter<TestEntity, EntityDTO> converter = new DeltaConverter<>(
+			GeneratedConverter.of(TestEntity.class, EntityDTO.class), EntityDTO.class);
+
+	@Test
+	public void testPatchWithoutBaselineHasAllProperties() {
+		final Patch patch = converter.toPatch(new TestEntity("entity", 3), null).get();
+
+		assertThat(patch.getChanges(), is(ImmutableMap.<String, Object> builder()
+				.put("active", false)
+				.put("id", 0L)
+				.put("name", "entity")
+				.put("rank", 3)
+				.put("version", 0L)
+				.build()));
+	}
+
+	@Test
+	public void testPatchHasChangedPropertiesOnly() {
+		final EntityDTO baseline = new EntityDTO();
+		baseline.setName("old");
+		baseline.setRank(3);
+		baseline.setVersion(-1);
+
+		final Patch patch = converter.toPatch(new TestEntity("new", 3), baseline).get();
+
+		assertThat(patch.getChanges(), is(ImmutableMap.<String, Object> of("name", "new", "version", 0L)));
+	}
+
+	@Test
+	public void testNoPatchForSeenVersion() {
+		final EntityDTO baseline = new EntityDTO();
+
+		final Optional<Patch> patch = converter.toPatch(new TestEntity("entity", 3), baseline);
+
+		assertThat(patch.isPresent(), is(false));
+	}
+
+	public interface Identified<I> {
+
+		public abstract I getId();
+
+	}
+
+	/**
+	 * Implements a generic getter, which gives it a bridge method, and has both isActive and getActive.
+	 */
+	public static class EntityDTO implements Identified<Long> {
+
+		private Long id = 0L;
+		private String name;
+		private int rank;
+		private long version;
+
+		@Override
+		public Long getId() {
+			return id;
+		}
+
+		public void setId(final Long id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public int getRank() {
+			return rank;
+		}
+
+		public void setRank(final int rank) {
+			this.rank = rank;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		public void setVersion(final long version) {
+			this.version = version;
+		}
+
+		public boolean isActive() {
+			return false;
+		}
+
+		public Boolean getActive() {
+			return Boolean.TRUE;
+		}
+
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.Hibernate;
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.hartveld.commons.db.metrics.StatementCounter;
+
+public class FetchPlanTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final int PARENTS = 3;
+	private static final int CHILDREN = 2;
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+	private TestParentDAO dao;
+
+	private final List<Long> ids = new ArrayList<>();
+
+	@After
+	public void tearDown() {
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testWithoutPlanEveryParentLoadsItsChildren() {
+		open(ImmutableMap.of());
+
+		final long statements = StatementCounter.count(() -> touchChildren(dao.retrieveAll()));
+
+		assertThat(statements, is(1L + PARENTS));
+	}
+
+	@Test
+	public void testAttributePlanLoadsChildrenWithParents() {
+		open(ImmutableMap.of());
+
+		final List<TestParent> parents = new ArrayList<>();
+		final long statements = StatementCounter.count(() -> {
+			parents.addAll(dao.retrieveAll(FetchPlan.attributes("children")));
+			touchChildren(parents);
+		});
+
+		assertThat(statements, is(1L));
+		assertThat(parents.size(), is(PARENTS));
+	}
+
+	@Test
+	public void testNamedPlanOnRetrieveById() {
+		open(ImmutableMap.of());
+
+		final long statements = StatementCounter.count(() -> {
+			final TestParent parent = dao.retrieveById(ids.get(0), FetchPlan.named(TestParent.WITH_CHILDREN));
+			assertThat(parent.getChildren().size(), is(CHILDREN));
+		});
+
+		assertThat(statements, is(1L));
+	}
+
+	@Test
+	public void testPlanOnRetrieveByIdAppliesToManagedEntity() {
+		open(ImmutableMap.of());
+		final TestParent managed = dao.retrieveById(ids.get(0));
+		assertThat(Hibernate.isInitialized(managed.getChildren()), is(false));
+
+		final long statements = StatementCounter.count(() -> {
+			final TestParent parent = dao.retrieveById(ids.get(0), FetchPlan.attributes("children"));
+			assertThat(parent, is(sameInstance(managed)));
+			assertThat(Hibernate.isInitialized(parent.getChildren()), is(true));
+		});
+
+		assertThat(statements, is(1L));
+		assertThat(managed.getChildren().size(), is(CHILDREN));
+	}
+
+	@Test
+	public void testPlanOnRetrieveByIds() {
+		open(ImmutableMap.of());
+
+		final List<TestParent> parents = new ArrayList<>();
+		final long statements = StatementCounter.count(() -> {
+			parents.addAll(dao.retrieveByIds(ids, FetchPlan.attributes("children")));
+			touchChildren(parents);
+		});
+
+		assertThat(statements, is(1L));
+		assertThat(parents.get(0).getId(), is(ids.get(0)));
+	}
+
+	@Test
+	public void testBatchFetchingBoundsLazyLoading() {
+		open(HibernateProperties.batchFetching(PARENTS));
+
+		final long statements = StatementCounter.count(() -> touchChildren(dao.retrieveAll()));
+
+		assertThat(statements, is(2L));
+	}
+
+	private void open(final Map<String, String> properties) {
+		emf = Persistence.createEntityManagerFactory(UNIT, ImmutableMap.<String, String> builder()
+				.put("hibernate.connection.url", "jdbc:h2:mem:fetch-plan;DB_CLOSE_DELAY=-1")
+				.putAll(HibernateProperties.statementCounting())
+				.putAll(properties)
+				.build());
+		em = emf.createEntityManager();
+		dao = new TestParentDAO(em);
+
+		em.getTransaction().begin();
+		for (int i = 0; i < PARENTS; i++) {
+			final TestParent parent = new TestParent("parent-" + i);
+			dao.persist(parent);
+			for (int j = 0; j < CHILDREN; j++) {
+				em.persist(new TestChild("child-" + j, parent));
+			}
+			ids.add(parent.getId());
+		}
+		em.getTransaction().commit();
+		em.clear();
+	}
+
+	private static void touchChildren(final List<TestParent> parents) {
+		for (final TestParent parent : parents) {
+			parent.getChildren().size();
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class GeneratedConverterTest {
+
+	@Test
+	public void testCopiesMatchingProperties() {
+		final TestParent parent = new TestParent("parent");
+		final TestChild child = new TestChild("child", parent);
+		parent.getChildren().add(child);
+
+		final ParentDTO dto = GeneratedConverter.of(TestParent.class, ParentDTO.class).toDTO(parent, true);
+
+		assertThat(dto.getName(), is("parent"));
+		assertThat(dto.getVersion(), is(1L));
+		assertThat(dto.getChildren(), contains(child));
+	}
+
+	@Test
+	public void testSkipsPropertiesWithOtherTypeArguments() {
+		final TestParent parent = new TestParent("parent");
+		parent.getChildren().add(new TestChild("child", parent));
+
+		final ParentWithChildDTOs dto = GeneratedConverter.of(TestParent.class, ParentWithChildDTOs.class)
+				.toDTO(parent, false);
+
+		assertThat(dto.getName(), is("parent"));
+		assertThat(dto.getChildren(), is(nullValue()));
+	}
+
+	@Test
+	public void testSkipsBridgeSettersOfGenericSuperclass() {
+		final GenericNameDTO dto = GeneratedConverter.of(TestParent.class, GenericNameDTO.class)
+				.toDTO(new TestParent("parent"));
+
+		assertThat(dto.getName(), is("parent"));
+		assertThat(dto.getNameWrites(), is(1));
+	}
+
+	public static class ParentDTO {
+
+		private String name;
+		private long version;
+		private List<TestChild> children;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+
+		public void setVersion(final long version) {
+			this.version = version;
+		}
+
+		public List<TestChild> getChildren() {
+			return children;
+		}
+
+		public void setChildren(final List<TestChild> children) {
+			this.children = children;
+		}
+
+	}
+
+	public static class ParentWithChildDTOs {
+
+		private String name;
+		private List<ChildDTO> children;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+		public List<ChildDTO> getChildren() {
+			return children;
+		}
+
+		public void setChildren(final List<ChildDTO> children) {
+			this.children = children;
+		}
+
+	}
+
+	public static class ChildDTO {
+
+		private String name;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(final String name) {
+			this.name = name;
+		}
+
+	}
+
+	public abstract static class NamedDTO<T> {
+
+		public abstract void setName(final T name);
+
+	}
+
+	public static class GenericNameDTO extends NamedDTO<String> {
+
+		private String name;
+		private int nameWrites;
+
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void setName(final String name) {
+			this.name = name;
+			nameWrites++;
+		}
+
+		public int getNameWrites() {
+			return nameWrites;
+		}
+
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class KeysetPagingTest {
+
+	private static final String UNIT = "H2-Test";
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+	private TestEntityDAO dao;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:keyset-paging;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+		dao = new TestEntityDAO(em);
+
+		em.getTransaction().begin();
+		dao.persist(new TestEntity("a", 2));
+		dao.persist(new TestEntity("b", 1));
+		dao.persist(new TestEntity("c", 2));
+		dao.persist(new TestEntity("d", 1));
+		dao.persist(new TestEntity(null, 2));
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testPagesById() {
+		final List<List<String>> pages = pages(PageKey.first(), 2);
+
+		assertThat(pages.size(), is(3));
+		assertThat(pages.get(0), contains("a", "b"));
+		assertThat(pages.get(1), contains("c", "d"));
+		assertThat(pages.get(2), contains((String) null));
+	}
+
+	@Test
+	public void testTiesOnAttributeAreOrderedById() {
+		final List<String> names = new ArrayList<>();
+		for (final List<String> page : pages(PageKey.first("rank"), 2)) {
+			names.addAll(page);
+		}
+
+		assertThat(names, contains("b", "d", "a", "c", null));
+	}
+
+	@Test
+	public void testFullLastPageHasNoNextKey() {
+		final Page<TestEntity> page = dao.retrievePage(5);
+
+		assertThat(page.getEntities().size(), is(5));
+		assertThat(page.hasNext(), is(false));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOptionalAttributeIsRejected() {
+		dao.retrievePage(PageKey.first("name"), 2);
+	}
+
+	private List<List<String>> pages(final PageKey first, final int size) {
+		final List<List<String>> pages = new ArrayList<>();
+
+		Page<TestEntity> page = dao.retrievePage(first, size);
+		pages.add(names(page));
+		while (page.hasNext()) {
+			page = dao.retrievePage(page.getNextKey(), size);
+			pages.add(names(page));
+		}
+
+		return pages;
+	}
+
+	private static List<String> names(final Page<TestEntity> page) {
+		final List<String> names = new ArrayList<>();
+		for (final TestEntity entity : page.getEntities()) {
+			names.add(entity.getName());
+		}
+
+		return names;
+	}
+
+}
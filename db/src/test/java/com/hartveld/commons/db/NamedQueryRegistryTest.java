@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class NamedQueryRegistryTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final String BY_NAME = "byName";
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:named-queries;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+
+		em.getTransaction().begin();
+		em.persist(new TestEntity("first"));
+		em.persist(new TestEntity("second"));
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testSameQueryCanBeRegisteredTwice() {
+		final String query = "from TestEntity where name = :name";
+		new QueryDAO(em, query);
+
+		assertThat(names(new QueryDAO(em, query).retrieveByName("first")), contains("first"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDifferentQueryUnderSameNameFails() {
+		new QueryDAO(em, "from TestEntity where name = :name");
+		new QueryDAO(em, "from TestEntity where name <> :name");
+	}
+
+	@Test
+	public void testAdHocQueriesDoNotCollideWithRegisteredNames() {
+		final QueryDAO dao = new QueryDAO(em, "from TestEntity where name = :name");
+		dao.register("from TestEntity", "from TestEntity where name = 'first'");
+
+		assertThat(names(dao.query("from TestEntity")), containsInAnyOrder("first", "second"));
+	}
+
+	@Test
+	public void testClosedFactoryCanBeCollected() throws InterruptedException {
+		final WeakReference<EntityManagerFactory> reference = useClosedFactory();
+
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+
+		assertThat(reference.get(), is(nullValue()));
+	}
+
+	private static WeakReference<EntityManagerFactory> useClosedFactory() {
+		final EntityManagerFactory other = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:named-queries-gc;DB_CLOSE_DELAY=-1"));
+		final EntityManager otherEm = other.createEntityManager();
+		new QueryDAO(otherEm, "from TestEntity where name = :name").retrieveByName("first");
+		otherEm.close();
+		other.close();
+
+		return new WeakReference<>(other);
+	}
+
+	private static List<String> names(final List<TestEntity> entities) {
+		final List<String> names = new ArrayList<>();
+		for (final TestEntity entity : entities) {
+			names.add(entity.getName());
+		}
+
+		return names;
+	}
+
+	private static final class QueryDAO extends DAOBase<TestEntity> {
+
+		QueryDAO(final EntityManager em, final String byName) {
+			super(em, TestEntity.class);
+
+			registerQuery(BY_NAME, byName);
+		}
+
+		List<TestEntity> retrieveByName(final String name) {
+			return createNamedQuery(BY_NAME).setParameter("name", name).getResultList();
+		}
+
+		void register(final String name, final String query) {
+			registerQuery(name, query);
+		}
+
+		List<TestEntity> query(final String query) {
+			return createQuery(query).getResultList();
+		}
+
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class OptimisticRetryExecutorTest {
+
+	private static final String ENTITY_NAME = TestEntity.class.getName();
+
+	private final AtomicInteger attempts = new AtomicInteger();
+	private final ConflictStatistics statistics = new ConflictStatistics();
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+	private OptimisticRetryExecutor executor;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory("H2-Test",
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:optimistic-retry;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+		executor = new OptimisticRetryExecutor(em, RetryPolicy.withoutBackoff(3), statistics);
+	}
+
+	@After
+	public void tearDown() {
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testRetriesAfterOptimisticLockConflict() {
+		final long id = persist(new TestEntity("entity"));
+
+		final String name = executor.execute(() -> {
+			final TestEntity entity = new TestEntityDAO(em).retrieveById(id);
+			if (attempts.incrementAndGet() == 1) {
+				concurrentlyUpdate(id);
+			}
+			entity.setName(entity.getName() + "!");
+
+			return entity.getName();
+		});
+
+		assertThat(attempts.get(), is(2));
+		assertThat(name, is("entity*!"));
+		assertThat(reload(id).getName(), is("entity*!"));
+		assertThat(statistics.getExecutions(), is(1L));
+		assertThat(statistics.getConflicts(ENTITY_NAME), is(1L));
+		assertThat(statistics.getFailures(), is(0L));
+	}
+
+	@Test
+	public void testGivesUpAfterMaxAttempts() {
+		final long id = persist(new TestEntity("entity"));
+
+		try {
+			executor.execute(() -> {
+				attempts.incrementAndGet();
+				final TestEntity entity = new TestEntityDAO(em).retrieveById(id);
+				concurrentlyUpdate(id);
+				entity.setName("lost");
+			});
+			fail("Expected the conflict to be rethrown");
+		} catch (final PersistenceException e) {
+			// Expected.
+		}
+
+		assertThat(attempts.get(), is(3));
+		assertThat(reload(id).getName(), is("entity***"));
+		assertThat(statistics.getExecutions(), is(1L));
+		assertThat(statistics.getConflicts(ENTITY_NAME), is(3L));
+		assertThat(statistics.getFailures(), is(1L));
+	}
+
+	@Test
+	public void testDoesNotRetryOtherFailures() {
+		try {
+			executor.execute(() -> {
+				attempts.incrementAndGet();
+				throw new IllegalStateException("not a conflict");
+			});
+			fail("Expected the failure to be rethrown");
+		} catch (final IllegalStateException e) {
+			// Expected.
+		}
+
+		assertThat(attempts.get(), is(1));
+		assertThat(statistics.getConflicts(), is(0L));
+		assertThat(statistics.getFailures(), is(0L));
+		assertThat(em.getTransaction().isActive(), is(false));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRefusesActiveTransaction() {
+		em.getTransaction().begin();
+		try {
+			executor.execute(() -> attempts.incrementAndGet());
+		} finally {
+			em.getTransaction().rollback();
+		}
+	}
+
+	private long persist(final TestEntity entity) {
+		em.getTransaction().begin();
+		em.persist(entity);
+		em.getTransaction().commit();
+		em.clear();
+
+		return entity.getId();
+	}
+
+	private void concurrentlyUpdate(final long id) {
+		final EntityManager other = emf.createEntityManager();
+		try {
+			other.getTransaction().begin();
+			final TestEntity entity = other.find(TestEntity.class, id);
+			entity.setName(entity.getName() + "*");
+			other.getTransaction().commit();
+		} finally {
+			other.close();
+		}
+	}
+
+	private TestEntity reload(final long id) {
+		final EntityManager other = emf.createEntityManager();
+		try {
+			return other.find(TestEntity.class, id);
+		} finally {
+			other.close();
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class ParallelConversionTest {
+
+	private static final int THRESHOLD = 100;
+
+	private final AtomicInteger submitted = new AtomicInteger();
+
+	private ExecutorService pool;
+	private NameConverter converter;
+
+	@Before
+	public void setUp() {
+		pool = Executors.newFixedThreadPool(4);
+		converter = new NameConverter(command -> {
+			submitted.incrementAndGet();
+			pool.execute(command);
+		});
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testBelowThresholdConvertsOnCallerThread() {
+		final List<String> names = converter.toDTOs(entities(THRESHOLD - 1));
+
+		assertThat(submitted.get(), is(0));
+		assertThat(names.size(), is(THRESHOLD - 1));
+	}
+
+	@Test
+	public void testAtThresholdPreservesOrder() {
+		final int count = THRESHOLD * 10 + 7;
+
+		final List<String> names = converter.toDTOs(entities(count));
+
+		assertThat(submitted.get(), is(not(0)));
+		assertThat(names.size(), is(count));
+		for (int i = 0; i < count; i++) {
+			assertThat(names.get(i), is("entity-" + i));
+		}
+	}
+
+	private static List<TestEntity> entities(final int count) {
+		final ImmutableList.Builder<TestEntity> builder = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			builder.add(new TestEntity("entity-" + i));
+		}
+
+		return builder.build();
+	}
+
+	private static final class NameConverter extends AbstractConverter<TestEntity, String> {
+
+		NameConverter(final Executor executor) {
+			super(THRESHOLD, executor);
+		}
+
+		@Override
+		protected String createDTO(final TestEntity model, final boolean incrementVersion) {
+			return model.getName();
+		}
+
+	}
+
+}
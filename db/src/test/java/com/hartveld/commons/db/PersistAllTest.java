@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.hartveld.commons.db.metrics.StatementCounter;
+
+public class PersistAllTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final int BATCH_SIZE = 100;
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+	private TestSequenceEntityDAO dao;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT, ImmutableMap.<String, String> builder()
+				.put("hibernate.connection.url", "jdbc:h2:mem:persist-all;DB_CLOSE_DELAY=-1")
+				.putAll(HibernateProperties.batching(BATCH_SIZE))
+				.putAll(HibernateProperties.statementCounting())
+				.build());
+		em = emf.createEntityManager();
+		dao = new TestSequenceEntityDAO(em);
+
+		em.getTransaction().begin();
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testWritesEveryBatchAsOneJDBCBatch() {
+		final int count = BATCH_SIZE * 2 + 50;
+		final List<TestSequenceEntity> entities = entities(count);
+
+		final int[] batches = new int[1];
+		final long statements = StatementCounter.count(() -> batches[0] = dao.persistAll(entities, BATCH_SIZE));
+
+		final long sequenceCalls = count / SequenceEntityBase.ALLOCATION_SIZE;
+		assertThat(batches[0], is(3));
+		assertThat(statements, is(batches[0] + sequenceCalls));
+		assertThat(dao.count(), is((long) count));
+	}
+
+	@Test
+	public void testClearsPersistenceContextAfterEveryBatch() {
+		final BatchObservingList entities = new BatchObservingList(entities(BATCH_SIZE * 2 + 50));
+
+		dao.persistAll(entities, BATCH_SIZE);
+
+		assertThat(entities.managedAtBatchStart, contains(0, 0));
+		assertThat(managedEntities(), is(0));
+	}
+
+	@Test
+	public void testExactMultipleDoesNotFlushEmptyBatch() {
+		assertThat(dao.persistAll(entities(BATCH_SIZE * 2), BATCH_SIZE), is(2));
+	}
+
+	@Test
+	public void testEmptyCollectionWritesNoBatches() {
+		final long statements = StatementCounter.count(() -> {
+			assertThat(dao.persistAll(new ArrayList<TestSequenceEntity>(), BATCH_SIZE), is(0));
+		});
+
+		assertThat(statements, is(0L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsNonPositiveBatchSize() {
+		dao.persistAll(entities(1), 0);
+	}
+
+	private static List<TestSequenceEntity> entities(final int count) {
+		final List<TestSequenceEntity> entities = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			entities.add(new TestSequenceEntity("entity-" + i));
+		}
+
+		return entities;
+	}
+
+	private int managedEntities() {
+		return em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities();
+	}
+
+	/**
+	 * Records the number of managed entities whenever the first entity of a new batch is requested, that is, right
+	 * after persistAll has written the previous batch.
+	 */
+	private final class BatchObservingList extends AbstractCollection<TestSequenceEntity> {
+
+		private final List<TestSequenceEntity> entities;
+		private final List<Integer> managedAtBatchStart = new ArrayList<>();
+
+		BatchObservingList(final List<TestSequenceEntity> entities) {
+			this.entities = entities;
+		}
+
+		@Override
+		public Iterator<TestSequenceEntity> iterator() {
+			final Iterator<TestSequenceEntity> iterator = entities.iterator();
+
+			return new Iterator<TestSequenceEntity>() {
+
+				private int index;
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public TestSequenceEntity next() {
+					if (index > 0 && index % BATCH_SIZE == 0) {
+						managedAtBatchStart.add(managedEntities());
+					}
+					index++;
+
+					return iterator.next();
+				}
+
+			};
+		}
+
+		@Override
+		public int size() {
+			return entities.size();
+		}
+
+		@Override
+		public String toString() {
+			// Logged by persistAll; iterating here would record extra batches.
+			return entities.size() + " entities";
+		}
+
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class PostgresCopyTest {
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory("H2-Test",
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:postgres-copy;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+	}
+
+	@After
+	public void tearDown() {
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testRendersEntityColumns() throws SQLException {
+		final BulkLoadMapping<TestEntity> mapping = new BulkLoadMapping<>(em.unwrap(SessionImplementor.class),
+				em.getMetamodel().entity(TestEntity.class));
+
+		assertThat(render(mapping.values(new TestEntity("tab\tback\\slash", 3))), is("0\ttab\\tback\\\\slash\t3\n"));
+		assertThat(render(mapping.values(new TestEntity(null, 1))), is("0\t\\N\t1\n"));
+	}
+
+	@Test
+	public void testRendersJdbcValues() {
+		final Object[] values = { new byte[] { 1, (byte) 0xab }, true, new BigDecimal("1E+3"), "line\nbreak" };
+
+		assertThat(render(values), is("\\\\x01AB\tt\t1000\tline\\nbreak\n"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testRefusesStreamedValues() {
+		render(new Object[] { new StringReader("clob") });
+	}
+
+	private static String render(final Object[] values) {
+		final StringBuilder rows = new StringBuilder();
+		PostgresCopy.appendRow(rows, values);
+
+		return rows.toString();
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.Tuple;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class ProjectionTest {
+
+	private static final String UNIT = "H2-Test";
+
+	private final PathConverter converter = new PathConverter();
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+	private TestChildDAO dao;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:projection;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+		dao = new TestChildDAO(em);
+
+		em.getTransaction().begin();
+		final TestParent parent = new TestParent("parent");
+		em.persist(parent);
+		em.persist(new TestChild("first", parent));
+		em.persist(new TestChild("second", parent));
+		em.flush();
+		em.clear();
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testProjectsAttributesWithoutLoadingEntities() {
+		final List<String> paths = dao.retrieveAll(converter);
+
+		assertThat(paths, containsInAnyOrder("parent/first", "parent/second"));
+		assertThat(managedEntities(), is(0));
+	}
+
+	@Test
+	public void testProjectionMatchesPredicate() {
+		final List<String> paths = dao.retrieveAll((root, builder) -> builder.equal(root.get("name"), "second"),
+				converter);
+
+		assertThat(paths, contains("parent/second"));
+	}
+
+	@Test
+	public void testProjectionMatchesEntityConversion() {
+		final List<String> projected = dao.retrieveAll(converter);
+		final List<String> converted = converter.toDTOs(dao.retrieveAll());
+
+		assertThat(projected, containsInAnyOrder(converted.toArray()));
+	}
+
+	private int managedEntities() {
+		return em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities();
+	}
+
+	private static final class PathConverter extends AbstractConverter<TestChild, String>
+			implements ProjectionConverter<TestChild, String> {
+
+		@Override
+		public List<String> getProjectedAttributes() {
+			return ImmutableList.of("name", "parent.name");
+		}
+
+		@Override
+		public String fromTuple(final Tuple tuple) {
+			return tuple.get("parent_name") + "/" + tuple.get("name");
+		}
+
+		@Override
+		protected String createDTO(final TestChild model, final boolean incrementVersion) {
+			return model.getParent().getName() + "/" + model.getName();
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class ReadOnlyTest {
+
+	private static final String UNIT = "H2-Test";
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+	private TestEntityDAO dao;
+	private long id;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:read-only;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+		dao = new TestEntityDAO(em);
+
+		em.getTransaction().begin();
+		final TestEntity entity = new TestEntity("entity");
+		dao.persist(entity);
+		em.flush();
+		em.clear();
+
+		id = entity.getId();
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testReadOnlyRetrieveAllSkipsDirtyChecking() {
+		final TestEntity entity = dao.retrieveAll(true).get(0);
+
+		assertThat(em.unwrap(Session.class).isReadOnly(entity), is(true));
+		assertChangeIsNotWritten(entity);
+	}
+
+	@Test
+	public void testReadOnlyRetrieveByIdSkipsDirtyChecking() {
+		final TestEntity entity = dao.retrieveById(id, true);
+
+		assertThat(em.unwrap(Session.class).isReadOnly(entity), is(true));
+		assertThat(em.unwrap(Session.class).isDefaultReadOnly(), is(false));
+		assertChangeIsNotWritten(entity);
+	}
+
+	@Test
+	public void testReadOnlyDAOReturnsReadOnlyEntities() {
+		final DAO<TestEntity> readOnly = new DAOBase<TestEntity>(em, TestEntity.class, true) {};
+
+		assertThat(readOnly.isReadOnly(), is(true));
+		assertChangeIsNotWritten(readOnly.retrieveById(id));
+	}
+
+	@Test
+	public void testWritableEntitiesAreStillWritten() {
+		final TestEntity entity = dao.retrieveById(id);
+
+		entity.setName("changed");
+		em.flush();
+		em.clear();
+
+		assertThat(dao.retrieveById(id).getName(), is("changed"));
+	}
+
+	private void assertChangeIsNotWritten(final TestEntity entity) {
+		entity.setName("changed");
+		em.flush();
+		em.clear();
+
+		assertThat(dao.retrieveById(id).getName(), is("entity"));
+	}
+
+}
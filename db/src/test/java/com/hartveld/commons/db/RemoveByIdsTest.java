@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class RemoveByIdsTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final int ENTITIES = 5;
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+	private TestEntityDAO dao;
+
+	private final List<Long> ids = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:remove-by-ids;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+		dao = new TestEntityDAO(em);
+
+		em.getTransaction().begin();
+		for (int i = 0; i < ENTITIES; i++) {
+			final TestEntity entity = new TestEntity("entity-" + i, i);
+			dao.persist(entity);
+			ids.add(entity.getId());
+		}
+		em.flush();
+		em.clear();
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testRemovesExistingIds() {
+		final int removed = dao.removeByIds(ImmutableList.of(ids.get(0), ids.get(1), ids.get(1), -1L));
+
+		assertThat(removed, is(2));
+		assertThat(dao.count(), is((long) ENTITIES - 2));
+	}
+
+	@Test
+	public void testDetachesManagedEntities() {
+		final TestEntity managed = dao.retrieveById(ids.get(0));
+
+		dao.removeByIds(ids.subList(0, 1));
+
+		assertThat(em.contains(managed), is(false));
+		assertThat(dao.retrieveMapByIds(ids.subList(0, 1)).isEmpty(), is(true));
+	}
+
+	@Test
+	public void testRemoveWhereMatchesPredicate() {
+		final int removed = dao.removeWhere((root, builder) -> builder.ge(root.<Integer> get("rank"), 3));
+
+		assertThat(removed, is(2));
+		assertThat(dao.count(), is(3L));
+	}
+
+}
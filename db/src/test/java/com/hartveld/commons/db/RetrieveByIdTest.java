@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NoResultException;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.hartveld.commons.db.metrics.StatementCounter;
+
+public class RetrieveByIdTest {
+
+	private static final String UNIT = "H2-Test";
+
+	private EntityManagerFactory emf;
+	private long id;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT, ImmutableMap.<String, String> builder()
+				.put("hibernate.connection.url", "jdbc:h2:mem:retrieve-by-id;DB_CLOSE_DELAY=-1")
+				.putAll(HibernateProperties.secondLevelCache())
+				.putAll(HibernateProperties.statementCounting())
+				.build());
+
+		final EntityManager em = emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			final TestEntity entity = new TestEntity("entity");
+			em.persist(entity);
+			em.getTransaction().commit();
+			id = entity.getId();
+		} finally {
+			em.close();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		emf.close();
+	}
+
+	@Test
+	public void testManagedEntityIsReturnedWithoutQuery() {
+		final EntityManager em = emf.createEntityManager();
+		try {
+			final TestEntityDAO dao = new TestEntityDAO(em);
+			final TestEntity entity = dao.retrieveById(id);
+
+			final long statements = StatementCounter.count(() -> assertThat(dao.retrieveById(id),
+					is(sameInstance(entity))));
+
+			assertThat(statements, is(0L));
+		} finally {
+			em.close();
+		}
+	}
+
+	@Test
+	public void testSecondLevelCacheServesOtherEntityManagers() {
+		emf.getCache().evictAll();
+		retrieveInNewEntityManager();
+
+		final long statements = StatementCounter.count(this::retrieveInNewEntityManager);
+
+		assertThat(statements, is(0L));
+	}
+
+	@Test(expected = NoResultException.class)
+	public void testMissingEntityThrows() {
+		final EntityManager em = emf.createEntityManager();
+		try {
+			new TestEntityDAO(em).retrieveById(id + 1);
+		} finally {
+			em.close();
+		}
+	}
+
+	private void retrieveInNewEntityManager() {
+		final EntityManager em = emf.createEntityManager();
+		try {
+			assertThat(new TestEntityDAO(em).retrieveById(id).getName(), is("entity"));
+		} finally {
+			em.close();
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.hartveld.commons.db.metrics.StatementCounter;
+
+public class RetrieveByIdsTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final int ENTITIES = 5;
+	private static final int IN_LIST_SIZE = 2;
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+	private TestEntityDAO dao;
+
+	private final List<Long> ids = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT, ImmutableMap.<String, String> builder()
+				.put("hibernate.connection.url", "jdbc:h2:mem:retrieve-by-ids;DB_CLOSE_DELAY=-1")
+				.putAll(HibernateProperties.statementCounting())
+				.build());
+		em = emf.createEntityManager();
+		dao = new TestEntityDAO(em) {
+
+			@Override
+			protected int getInListSize() {
+				return IN_LIST_SIZE;
+			}
+
+		};
+
+		em.getTransaction().begin();
+		for (int i = 0; i < ENTITIES; i++) {
+			final TestEntity entity = new TestEntity("entity-" + i);
+			dao.persist(entity);
+			ids.add(entity.getId());
+		}
+		em.flush();
+		em.clear();
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testLoadsIdsInChunks() {
+		final List<TestEntity> entities = new ArrayList<>();
+
+		final long statements = StatementCounter.count(() -> entities.addAll(dao.retrieveByIds(ids)));
+
+		assertThat(statements, is(3L));
+		assertThat(entities.size(), is(ENTITIES));
+	}
+
+	@Test
+	public void testReturnsEntitiesInRequestedOrderWithoutMissingIds() {
+		final List<Long> requested = ImmutableList.of(ids.get(3), -1L, ids.get(0), ids.get(3));
+
+		final List<TestEntity> entities = dao.retrieveByIds(requested);
+
+		assertThat(entities.size(), is(2));
+		assertThat(entities.get(0).getId(), is(ids.get(3)));
+		assertThat(entities.get(1).getId(), is(ids.get(0)));
+	}
+
+	@Test
+	public void testManagedEntitiesAreNotLoadedAgain() {
+		final TestEntity managed = dao.retrieveById(ids.get(0));
+
+		final List<TestEntity> entities = new ArrayList<>();
+		final long statements = StatementCounter.count(() -> entities.addAll(dao.retrieveByIds(ids.subList(0, 1))));
+
+		assertThat(statements, is(0L));
+		assertThat(entities.get(0), is(sameInstance(managed)));
+	}
+
+	@Test
+	public void testMapIsKeyedById() {
+		final Map<Long, TestEntity> entities = dao.retrieveMapByIds(ids.subList(1, 3));
+
+		assertThat(entities.keySet(), contains(ids.get(1), ids.get(2)));
+		assertThat(entities.get(ids.get(2)).getName(), is("entity-2"));
+	}
+
+}
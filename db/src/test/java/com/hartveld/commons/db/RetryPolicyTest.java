@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+	@Test
+	public void testBackoffDoublesUpToMaximum() {
+		final RetryPolicy policy = new RetryPolicy(10, 1, 8, TimeUnit.MILLISECONDS, 0);
+
+		assertThat(policy.backoffNanos(1), is(TimeUnit.MILLISECONDS.toNanos(1)));
+		assertThat(policy.backoffNanos(2), is(TimeUnit.MILLISECONDS.toNanos(2)));
+		assertThat(policy.backoffNanos(4), is(TimeUnit.MILLISECONDS.toNanos(8)));
+		assertThat(policy.backoffNanos(5), is(TimeUnit.MILLISECONDS.toNanos(8)));
+	}
+
+	@Test
+	public void testBackoffDoesNotOverflow() {
+		final RetryPolicy policy = new RetryPolicy(Integer.MAX_VALUE, 1, 1, TimeUnit.HOURS, 0);
+
+		assertThat(policy.backoffNanos(100), is(TimeUnit.HOURS.toNanos(1)));
+		assertThat(policy.backoffNanos(Integer.MAX_VALUE), is(TimeUnit.HOURS.toNanos(1)));
+	}
+
+	@Test
+	public void testJitterStaysWithinBounds() {
+		final RetryPolicy policy = new RetryPolicy(10, 100, 100, TimeUnit.MILLISECONDS, 0.5);
+		final long max = TimeUnit.MILLISECONDS.toNanos(100);
+
+		for (int i = 0; i < 1000; i++) {
+			assertThat(policy.backoffNanos(1), is(allOf(greaterThanOrEqualTo(max / 2), lessThanOrEqualTo(max))));
+		}
+	}
+
+	@Test
+	public void testWithoutBackoffNeverWaits() {
+		final RetryPolicy policy = RetryPolicy.withoutBackoff(3);
+
+		assertThat(policy.getMaxAttempts(), is(3));
+		assertThat(policy.backoffNanos(1), is(0L));
+		assertThat(policy.backoffNanos(3), is(0L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsMaximumBelowInitialBackoff() {
+		new RetryPolicy(3, 10, 5, TimeUnit.MILLISECONDS, 0);
+	}
+
+}
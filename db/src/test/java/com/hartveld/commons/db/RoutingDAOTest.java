@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class RoutingDAOTest {
+
+	private static final String UNIT = "H2-Test";
+
+	private EntityManagerFactory primaryEmf;
+	private EntityManagerFactory replicaEmf;
+	private EntityManagerFactory otherReplicaEmf;
+
+	private EntityManager em;
+
+	@Before
+	public void setUp() {
+		primaryEmf = open("primary");
+		replicaEmf = open("replica");
+		otherReplicaEmf = open("other-replica");
+
+		em = primaryEmf.createEntityManager();
+	}
+
+	@After
+	public void tearDown() {
+		em.close();
+
+		primaryEmf.close();
+		replicaEmf.close();
+		otherReplicaEmf.close();
+	}
+
+	@Test
+	public void testReadsGoToReplica() {
+		try (RoutingDAO<TestEntity> dao = routingDAO(new ReplicaPool(replicaEmf))) {
+			assertThat(names(dao.retrieveAll()), contains("replica"));
+			assertThat(dao.reader(), is(not(sameInstance(dao.writer()))));
+		}
+	}
+
+	@Test
+	public void testReadsStickToPrimaryAfterWrite() {
+		try (RoutingDAO<TestEntity> dao = routingDAO(new ReplicaPool(replicaEmf))) {
+			assertThat(names(dao.retrieveAll()), contains("replica"));
+
+			em.getTransaction().begin();
+			dao.persist(new TestEntity("written"));
+
+			assertThat(dao.isStickToPrimary(), is(true));
+			assertThat(names(dao.retrieveAll()), contains("primary", "written"));
+
+			em.getTransaction().commit();
+		}
+	}
+
+	@Test
+	public void testReplicaEntitiesAreReadOnly() {
+		try (RoutingDAO<TestEntity> dao = routingDAO(new ReplicaPool(replicaEmf))) {
+			final TestEntity entity = dao.retrieveAll().get(0);
+			final Session session = dao.reader().getEntityManager().unwrap(Session.class);
+
+			assertThat(session.isReadOnly(entity), is(true));
+		}
+	}
+
+	@Test
+	public void testReplicasAreUsedRoundRobin() {
+		final ReplicaPool pool = new ReplicaPool(replicaEmf, otherReplicaEmf);
+
+		try (RoutingDAO<TestEntity> first = routingDAO(pool); RoutingDAO<TestEntity> second = routingDAO(pool)) {
+			assertThat(names(first.retrieveAll()), contains("replica"));
+			assertThat(names(second.retrieveAll()), contains("other-replica"));
+		}
+	}
+
+	@Test
+	public void testCloseClosesReplicaEntityManagerOnly() {
+		final RoutingDAO<TestEntity> dao = routingDAO(new ReplicaPool(replicaEmf));
+		final EntityManager replica = dao.reader().getEntityManager();
+
+		dao.close();
+
+		assertThat(replica.isOpen(), is(false));
+		assertThat(em.isOpen(), is(true));
+	}
+
+	private RoutingDAO<TestEntity> routingDAO(final ReplicaPool pool) {
+		return new RoutingDAO<>(new TestEntityDAO(em), TestEntityDAO::new, pool);
+	}
+
+	private static EntityManagerFactory open(final String database) {
+		final EntityManagerFactory emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1"));
+
+		final EntityManager seed = emf.createEntityManager();
+		seed.getTransaction().begin();
+		new TestEntityDAO(seed).persist(new TestEntity(database));
+		seed.getTransaction().commit();
+		seed.close();
+
+		return emf;
+	}
+
+	private static List<String> names(final List<TestEntity> entities) {
+		return entities.stream().map(TestEntity::getName).collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.hartveld.commons.db.metrics.StatementCounter;
+
+public class SequenceEntityBaseTest {
+
+	private static final String UNIT = "H2-Test";
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT, ImmutableMap.<String, String> builder()
+				.put("hibernate.connection.url", "jdbc:h2:mem:sequence-entity;DB_CLOSE_DELAY=-1")
+				.putAll(HibernateProperties.statementCounting())
+				.build());
+		em = emf.createEntityManager();
+
+		em.getTransaction().begin();
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testIdIsAssignedWithoutInsert() {
+		final TestSequenceEntity entity = new TestSequenceEntity("entity");
+
+		final long statements = StatementCounter.count(() -> em.persist(entity));
+
+		assertThat(statements, is(1L));
+		assertThat(entity.getId(), is(not(0L)));
+	}
+
+	@Test
+	public void testIdsAreAllocatedInBlocks() {
+		final TestSequenceEntity first = new TestSequenceEntity("first");
+		em.persist(first);
+
+		final long statements = StatementCounter.count(() -> {
+			for (int i = 1; i < SequenceEntityBase.ALLOCATION_SIZE; i++) {
+				final TestSequenceEntity entity = new TestSequenceEntity("entity-" + i);
+				em.persist(entity);
+				assertThat(entity.getId(), is(first.getId() + i));
+			}
+		});
+
+		assertThat(statements, is(0L));
+	}
+
+}
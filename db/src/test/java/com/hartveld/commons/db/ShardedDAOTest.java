@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class ShardedDAOTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final int SHARDS = 3;
+
+	private final List<EntityManagerFactory> emfs = new ArrayList<>();
+	private final List<EntityManager> ems = new ArrayList<>();
+	private final List<DAO<TestShardedEntity>> daos = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		for (int shard = 0; shard < SHARDS; shard++) {
+			final Map<String, String> properties = ImmutableMap.<String, String> builder()
+					.put("hibernate.connection.url", "jdbc:h2:mem:shard" + shard + ";DB_CLOSE_DELAY=-1")
+					.putAll(HibernateProperties.shard(shard))
+					.build();
+
+			final EntityManagerFactory emf = Persistence.createEntityManagerFactory(UNIT, properties);
+			final EntityManager em = emf.createEntityManager();
+			em.getTransaction().begin();
+
+			emfs.add(emf);
+			ems.add(em);
+			daos.add(new TestShardedEntityDAO(em));
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (final EntityManager em : ems) {
+			em.getTransaction().rollback();
+			em.close();
+		}
+		for (final EntityManagerFactory emf : emfs) {
+			emf.close();
+		}
+	}
+
+	@Test
+	public void testIdsEncodeShard() {
+		final ShardedDAO<TestShardedEntity> dao = new ShardedDAO<>(daos);
+
+		for (int i = 0; i < 6; i++) {
+			final TestShardedEntity entity = new TestShardedEntity("entity-" + i);
+			dao.persist(entity);
+
+			assertThat(entity.getShard(), is(i % SHARDS));
+			assertThat(daos.get(entity.getShard()).getEntityManager().contains(entity), is(true));
+		}
+	}
+
+	@Test
+	public void testRoutingKeySelectsShard() {
+		final ShardedDAO<TestShardedEntity> dao = new ShardedDAO<>(daos, TestShardedEntity::getName);
+
+		final TestShardedEntity first = new TestShardedEntity("same");
+		final TestShardedEntity second = new TestShardedEntity("same");
+		dao.persistAll(ImmutableList.of(first, second), 10);
+
+		assertThat(first.getShard(), is(second.getShard()));
+		assertThat(first.getShard(), is(Math.floorMod("same".hashCode(), SHARDS)));
+	}
+
+	@Test
+	public void testReadsAreRoutedById() {
+		final ShardedDAO<TestShardedEntity> dao = new ShardedDAO<>(daos);
+		final List<TestShardedEntity> entities = persist(dao, 5);
+
+		for (final TestShardedEntity entity : entities) {
+			assertThat(dao.retrieveById(entity.getId()).getName(), is(entity.getName()));
+		}
+
+		final List<Long> ids = ImmutableList.of(entities.get(4).getId(), entities.get(0).getId(),
+				entities.get(2).getId());
+		assertThat(dao.retrieveByIds(ids), contains(entities.get(4), entities.get(0), entities.get(2)));
+	}
+
+	@Test
+	public void testScatterGather() {
+		final ShardedDAO<TestShardedEntity> dao = new ShardedDAO<>(daos);
+		final List<TestShardedEntity> entities = persist(dao, 7);
+
+		assertThat(dao.count(), is(7L));
+		assertThat(dao.retrieveAll(), containsInAnyOrder(entities.toArray()));
+
+		assertThat(dao.removeWhere((root, builder) -> builder.like(root.get("name"), "entity-1%")), is(1));
+		assertThat(dao.removeByIds(ImmutableList.of(entities.get(2).getId(), entities.get(3).getId())), is(2));
+		assertThat(dao.count(), is(4L));
+	}
+
+	@Test
+	public void testScatterRunsOnCallerThreadByDefault() {
+		final Thread caller = Thread.currentThread();
+		final List<Thread> threads = new ArrayList<>();
+		final ShardedDAO<TestShardedEntity> dao = new ShardedDAO<>(daos);
+		persist(dao, 3);
+
+		final int removed = dao.removeWhere((root, builder) -> {
+			threads.add(Thread.currentThread());
+			return builder.like(root.get("name"), "none");
+		});
+
+		assertThat(removed, is(0));
+		assertThat(threads, contains(caller, caller, caller));
+	}
+
+	@Test
+	public void testScatterUsesGivenExecutor() {
+		final ExecutorService executor = Executors.newFixedThreadPool(SHARDS);
+		try {
+			final ShardedDAO<TestShardedEntity> dao = new ShardedDAO<>(daos, null, executor);
+			final List<TestShardedEntity> entities = persist(dao, 7);
+
+			assertThat(dao.count(), is(7L));
+			assertThat(dao.retrieveAll(), containsInAnyOrder(entities.toArray()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static List<TestShardedEntity> persist(final ShardedDAO<TestShardedEntity> dao, final int count) {
+		final List<TestShardedEntity> entities = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			entities.add(new TestShardedEntity("entity-" + i));
+		}
+		dao.persistAll(entities);
+		dao.flush();
+
+		return entities;
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class StreamAllTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final int PARENTS = 20;
+	private static final int FETCH_SIZE = 5;
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:stream-all;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+
+		em.getTransaction().begin();
+		for (int i = 0; i < PARENTS; i++) {
+			final TestParent parent = new TestParent("parent-" + i);
+			em.persist(parent);
+			em.persist(new TestChild("child-" + i, parent));
+		}
+		em.persist(new TestEntity("managed"));
+		em.flush();
+		em.clear();
+	}
+
+	@After
+	public void tearDown() {
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testStreamingEvictsLoadedAssociations() {
+		final TestEntity managed = new TestEntityDAO(em).retrieveAll().get(0);
+
+		final long streamed;
+		try (Stream<TestChild> children = new TestChildDAO(em).streamAll(FETCH_SIZE)) {
+			streamed = children.filter(c -> c.getParent().getName().startsWith("parent")).count();
+		}
+
+		assertThat(streamed, is((long) PARENTS));
+		assertThat(managedEntities(), is(1));
+		assertThat(em.contains(managed), is(true));
+	}
+
+	@Test
+	public void testChangesMadeWhileStreamingAreWritten() {
+		final long id = new TestEntityDAO(em).retrieveAll().get(0).getId();
+		em.clear();
+		final AtomicInteger consumed = new AtomicInteger();
+
+		try (Stream<TestChild> children = new TestChildDAO(em).streamAll(FETCH_SIZE)) {
+			children.forEach(child -> {
+				final int i = consumed.getAndIncrement();
+				if (i == 0) {
+					new TestEntityDAO(em).retrieveById(id).setName("renamed");
+				}
+				if (i < 3) {
+					em.persist(new TestSequenceEntity(child.getName()));
+				}
+			});
+		}
+
+		em.flush();
+		em.clear();
+
+		assertThat(em.createQuery("select count(e) from TestSequenceEntity e", Long.class).getSingleResult(), is(3L));
+		assertThat(new TestEntityDAO(em).retrieveById(id).getName(), is("renamed"));
+	}
+
+	private int managedEntities() {
+		return em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities();
+	}
+
+}
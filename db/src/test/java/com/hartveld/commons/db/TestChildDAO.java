@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+public class TestChildDAO extends DAOBase<TestChild> {
+
+	public TestChildDAO(final EntityManager em) {
+		super(em, TestChild.class);
+	}
+
+	public List<TestParent> retrieveCachedParents() {
+		return createCachedQuery("select c.parent from TestChild c order by c.name", TestParent.class)
+				.getResultList();
+	}
+
+	public List<String> retrieveCachedParentNames() {
+		return createCachedQuery("select c.parent.name from TestChild c order by c.name", String.class)
+				.invalidatedBy(TestParent.class)
+				.getResultList();
+	}
+
+	public List<Object[]> retrieveCachedChildRows() {
+		return createCachedQuery("select c, c.name from TestChild c", Object[].class).getResultList();
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class WriteBehindDAOTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final int BATCH_SIZE = 100;
+	private static final int CAPACITY = 1000;
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:write-behind;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+	}
+
+	@After
+	public void tearDown() {
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testFlushCoalescesUpdates() throws InterruptedException {
+		final long id = persist(new TestEntity("entity"));
+
+		try (WriteBehindDAO<TestEntity> dao = writeBehind()) {
+			dao.update(id, e -> e.setName(e.getName() + "!"));
+			dao.update(id, e -> e.setName(e.getName() + "?"));
+			assertThat(dao.getPendingCount(), is(1));
+
+			dao.flush();
+
+			assertThat(dao.getPendingCount(), is(0));
+			assertThat(reload(TestEntity.class, id).getName(), is("entity!?"));
+		}
+	}
+
+	@Test
+	public void testCloseWritesPendingInserts() throws InterruptedException {
+		final TestEntity entity = new TestEntity("new");
+
+		final WriteBehindDAO<TestEntity> dao = writeBehind();
+		dao.persist(entity);
+		dao.close();
+
+		assertThat(new TestEntityDAO(em).count(), is(1L));
+		assertThat(dao.getDroppedCount(), is(0L));
+	}
+
+	@Test
+	public void testFailingUpdateIsDroppedAlone() throws InterruptedException {
+		final long failing = persist(new TestEntity("failing"));
+		final long succeeding = persist(new TestEntity("succeeding"));
+
+		try (WriteBehindDAO<TestEntity> dao = writeBehind()) {
+			dao.update(failing, e -> {
+				e.setName("changed");
+				throw new IllegalArgumentException("broken update");
+			});
+			dao.update(succeeding, e -> e.setName("changed"));
+			dao.update(Long.MAX_VALUE, e -> e.setName("missing"));
+			dao.flush();
+
+			assertThat(dao.getDroppedCount(), is(2L));
+			assertThat(reload(TestEntity.class, failing).getName(), is("failing"));
+			assertThat(reload(TestEntity.class, succeeding).getName(), is("changed"));
+		}
+	}
+
+	@Test
+	public void testFailingInsertsDoNotPreventUpdates() throws InterruptedException {
+		final TestParent parent = new TestParent("parent");
+		persist(parent);
+		final long child = persist(new TestChild("child", parent));
+
+		try (WriteBehindDAO<TestChild> dao = new WriteBehindDAO<>(emf, TestChildDAO::new, BATCH_SIZE, CAPACITY, 1,
+				TimeUnit.HOURS)) {
+			// The transient parent fails the insert with an IllegalStateException rather than a PersistenceException.
+			dao.persist(new TestChild("orphan", new TestParent("transient")));
+			dao.update(child, c -> c.setName("updated"));
+			dao.flush();
+
+			assertThat(dao.getDroppedCount(), is(1L));
+			assertThat(reload(TestChild.class, child).getName(), is("updated"));
+		}
+	}
+
+	private WriteBehindDAO<TestEntity> writeBehind() {
+		return new WriteBehindDAO<>(emf, TestEntityDAO::new, BATCH_SIZE, CAPACITY, 1, TimeUnit.HOURS);
+	}
+
+	private long persist(final EntityBase entity) {
+		em.getTransaction().begin();
+		em.persist(entity);
+		em.getTransaction().commit();
+
+		return entity.getId();
+	}
+
+	private <E> E reload(final Class<E> entityClass, final long id) {
+		em.clear();
+
+		return em.find(entityClass, id);
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.cache;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.hartveld.commons.db.HibernateProperties;
+import com.hartveld.commons.db.TestEntity;
+import com.hartveld.commons.db.TestEntityDAO;
+
+public class EntityCachesTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final int MAX_ENTRIES = 2;
+	private static final int ENTITIES = 3;
+	private static final long TIME_TO_LIVE_SECONDS = 60;
+
+	private EntityManagerFactory emf;
+
+	private final List<Long> ids = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		EntityCaches.configure(TestEntity.class, MAX_ENTRIES, TIME_TO_LIVE_SECONDS);
+
+		emf = Persistence.createEntityManagerFactory(UNIT, ImmutableMap.<String, String> builder()
+				.put("hibernate.connection.url", "jdbc:h2:mem:entity-caches;DB_CLOSE_DELAY=-1")
+				.putAll(HibernateProperties.secondLevelCache())
+				.build());
+
+		final EntityManager em = emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			for (int i = 0; i < ENTITIES; i++) {
+				final TestEntity entity = new TestEntity("entity-" + i);
+				em.persist(entity);
+				ids.add(entity.getId());
+			}
+			em.getTransaction().commit();
+		} finally {
+			em.close();
+		}
+
+		emf.getCache().evictAll();
+		emf.unwrap(SessionFactory.class).getStatistics().clear();
+	}
+
+	@After
+	public void tearDown() {
+		emf.close();
+	}
+
+	@Test
+	public void testRegionIsBoundedAndReportsStatistics() {
+		final long evictionsBefore = EntityCaches.statistics(emf, TestEntity.class).getEvictionCount();
+
+		for (final Long id : ids) {
+			retrieve(id);
+		}
+		retrieve(ids.get(ENTITIES - 1));
+		retrieve(ids.get(0));
+
+		final CacheStatistics statistics = EntityCaches.statistics(emf, TestEntity.class);
+		assertThat(statistics.getMissCount(), is((long) ENTITIES + 1));
+		assertThat(statistics.getHitCount(), is(1L));
+		assertThat(statistics.getPutCount(), is((long) ENTITIES + 1));
+		assertThat(statistics.getElementCount(), is((long) MAX_ENTRIES));
+		assertThat(statistics.getEvictionCount() - evictionsBefore, is((long) ENTITIES + 1 - MAX_ENTRIES));
+	}
+
+	@Test
+	public void testConfigureSetsTimeToLive() {
+		final CacheConfiguration config = CacheManager.getInstance().getCache(TestEntity.class.getName())
+				.getCacheConfiguration();
+
+		assertThat(config.getMaxElementsInMemory(), is(MAX_ENTRIES));
+		assertThat(config.getTimeToLiveSeconds(), is(TIME_TO_LIVE_SECONDS));
+	}
+
+	private void retrieve(final long id) {
+		final EntityManager em = emf.createEntityManager();
+		try {
+			new TestEntityDAO(em).retrieveById(id);
+		} finally {
+			em.close();
+		}
+	}
+
+}
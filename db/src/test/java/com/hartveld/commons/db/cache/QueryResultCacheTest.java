@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.cache;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.hartveld.commons.db.TestChild;
+import com.hartveld.commons.db.TestChildDAO;
+import com.hartveld.commons.db.TestEntity;
+import com.hartveld.commons.db.TestEntityDAO;
+import com.hartveld.commons.db.TestParent;
+import com.hartveld.commons.db.TestParentDAO;
+
+public class QueryResultCacheTest {
+
+	private static final String UNIT = "H2-Test";
+	private static final String QUERY = "select e.name from TestEntity e";
+
+	private QueryResultCache cache;
+
+	@Before
+	public void setUp() {
+		cache = QueryResultCache.withMaximumSize(10);
+		QueryResultCache.install(cache);
+	}
+
+	@After
+	public void tearDown() {
+		QueryResultCache.uninstall();
+	}
+
+	@Test
+	public void testLoadInterleavedWithInvalidationIsNotKept() throws InterruptedException {
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch written = new CountDownLatch(1);
+
+		final Thread reader = new Thread(() -> cache.get(TestEntity.class, QUERY, ImmutableMap.of(), String.class,
+				() -> {
+					loading.countDown();
+					written.await();
+					return ImmutableList.of("stale");
+				}));
+		reader.start();
+
+		loading.await();
+		cache.invalidate(TestEntity.class);
+		written.countDown();
+		reader.join();
+
+		assertThat(cache.size(), is(0L));
+		assertThat(cache.get(TestEntity.class, QUERY, ImmutableMap.of(), String.class,
+				() -> ImmutableList.of("fresh")), contains("fresh"));
+	}
+
+	@Test
+	public void testInvalidationLeavesStaleEntriesToAgeOut() {
+		cache.get(TestEntity.class, QUERY, ImmutableMap.of(), String.class, () -> ImmutableList.of("old"));
+
+		cache.invalidate(TestEntity.class);
+
+		assertThat(cache.size(), is(1L));
+		assertThat(cache.get(TestEntity.class, QUERY, ImmutableMap.of(), String.class,
+				() -> ImmutableList.of("new")), contains("new"));
+	}
+
+	@Test
+	public void testOtherEntityResultsAreLoadedPerEntityManager() {
+		final EntityManagerFactory emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:query-cache-entities;DB_CLOSE_DELAY=-1"));
+		final EntityManager first = emf.createEntityManager();
+		final EntityManager second = emf.createEntityManager();
+
+		try {
+			persistFamily(first);
+
+			final List<TestParent> firstParents = new TestChildDAO(first).retrieveCachedParents();
+			final List<TestParent> secondParents = new TestChildDAO(second).retrieveCachedParents();
+
+			assertThat(cache.size(), is(1L));
+			assertThat(secondParents.size(), is(2));
+			assertThat(secondParents.get(0), is(sameInstance(secondParents.get(1))));
+			assertThat(secondParents.get(0), is(not(sameInstance(firstParents.get(0)))));
+			assertThat(second.contains(secondParents.get(0)), is(true));
+		} finally {
+			first.close();
+			second.close();
+			emf.close();
+		}
+	}
+
+	@Test
+	public void testWritesToDeclaredClassesInvalidate() {
+		final EntityManagerFactory emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:query-cache-names;DB_CLOSE_DELAY=-1"));
+		final EntityManager em = emf.createEntityManager();
+
+		try {
+			final long id = persistFamily(em);
+			assertThat(new TestChildDAO(em).retrieveCachedParentNames(), contains("parent", "parent"));
+
+			em.getTransaction().begin();
+			final TestParentDAO parents = new TestParentDAO(em);
+			parents.retrieveById(id).setName("renamed");
+			parents.flush();
+			em.getTransaction().commit();
+
+			assertThat(new TestChildDAO(em).retrieveCachedParentNames(), contains("renamed", "renamed"));
+		} finally {
+			em.close();
+			emf.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRowsHoldingEntitiesAreRefused() {
+		final EntityManagerFactory emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:query-cache-rows;DB_CLOSE_DELAY=-1"));
+		final EntityManager em = emf.createEntityManager();
+
+		try {
+			persistFamily(em);
+			new TestChildDAO(em).retrieveCachedChildRows();
+		} finally {
+			em.close();
+			emf.close();
+		}
+	}
+
+	@Test
+	public void testResultsReadBeforeCommitAreInvalidatedOnCommit() {
+		final EntityManagerFactory emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:query-cache;DB_CLOSE_DELAY=-1"));
+		final EntityManager writer = emf.createEntityManager();
+		final EntityManager reader = emf.createEntityManager();
+
+		try {
+			writer.getTransaction().begin();
+			new TestEntityDAO(writer).persist(new TestEntity("written"));
+			writer.flush();
+
+			final List<String> beforeCommit = new TestEntityDAO(reader).retrieveCachedNames();
+			writer.getTransaction().commit();
+
+			assertThat(beforeCommit, is(empty()));
+			assertThat(new TestEntityDAO(reader).retrieveCachedNames(), contains("written"));
+		} finally {
+			writer.close();
+			reader.close();
+			emf.close();
+		}
+	}
+
+	private static long persistFamily(final EntityManager em) {
+		em.getTransaction().begin();
+		final TestParent parent = new TestParent("parent");
+		em.persist(parent);
+		em.persist(new TestChild("first", parent));
+		em.persist(new TestChild("second", parent));
+		em.getTransaction().commit();
+		em.clear();
+
+		return parent.getId();
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013 David Hartveld
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.hartveld.commons.db.metrics;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.jpa.HibernateQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.hartveld.commons.db.TestEntity;
+import com.hartveld.commons.db.TestEntityDAO;
+
+public class MetricsTest {
+
+	private static final String UNIT = "H2-Test";
+
+	private final List<String> recorded = new ArrayList<>();
+
+	private EntityManagerFactory emf;
+	private EntityManager em;
+
+	@Before
+	public void setUp() {
+		emf = Persistence.createEntityManagerFactory(UNIT,
+				ImmutableMap.of("hibernate.connection.url", "jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1"));
+		em = emf.createEntityManager();
+
+		Metrics.install((entityClass, operation, elapsedNanos, rows) -> {
+			synchronized (recorded) {
+				recorded.add(operation + ":" + rows);
+			}
+		});
+
+		em.getTransaction().begin();
+	}
+
+	@After
+	public void tearDown() {
+		Metrics.uninstall();
+
+		em.getTransaction().rollback();
+		em.close();
+		emf.close();
+	}
+
+	@Test
+	public void testTimedQueryUnwrapsToProviderTypes() {
+		final TypedQuery<TestEntity> query = em.createQuery("select e from TestEntity e where e.name = :name",
+				TestEntity.class);
+		final TypedQuery<TestEntity> timed = Metrics.timed(query, TestEntity.class, DAOOperation.QUERY);
+
+		assertThat(timed, is(instanceOf(HibernateQuery.class)));
+		assertThat(timed.unwrap(org.hibernate.Query.class), is(instanceOf(org.hibernate.Query.class)));
+		assertThat(timed.unwrap(query.getClass()), is(sameInstance(query)));
+		assertThat(timed.setParameter("name", "entity"), is(sameInstance(timed)));
+	}
+
+	@Test
+	public void testTimedQueryRecordsExecution() {
+		Metrics.timed(em.createQuery("select e from TestEntity e", TestEntity.class), TestEntity.class,
+				DAOOperation.QUERY).getResultList();
+
+		assertThat(recorded, contains("QUERY:0"));
+	}
+
+	@Test
+	public void testBatchedPersistRecordsEveryFlush() {
+		final List<TestEntity> entities = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			entities.add(new TestEntity("entity-" + i));
+		}
+
+		new TestEntityDAO(em).persistAll(entities, 3);
+
+		assertThat(recorded, contains("PERSIST:3", "PERSIST:2"));
+	}
+
+}